@@ -0,0 +1,43 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh")
+}
+
+group = "com.loganasherjones"
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+val accumuloVersion = project.property("accumuloVersion").toString()
+
+dependencies {
+    jmh(project(":library"))
+    jmh("org.apache.accumulo:accumulo-core:${accumuloVersion}")
+    jmhRuntimeOnly("ch.qos.logback:logback-classic:1.5.1")
+    jmhRuntimeOnly(project(":test-iterator"))
+}
+
+jmh {
+    jmhVersion = "1.37"
+    resultFormat = "JSON"
+    // ./gradlew :benchmarks:jmh -Pbenchmarks=ClusterLifecycleBenchmark.start
+    if (project.hasProperty("benchmarks")) {
+        includes.add(project.property("benchmarks").toString())
+    }
+    // ./gradlew :benchmarks:jmh -PiteratorStack=com.example.MyFilter?option=value
+    if (project.hasProperty("iteratorStack")) {
+        benchmarkParameters.put("stack", objects.listProperty(String::class.java)
+            .value(listOf(project.property("iteratorStack").toString())))
+    }
+    // ./gradlew :benchmarks:jmh -Pprofilers=gc
+    if (project.hasProperty("profilers")) {
+        profilers.addAll(project.property("profilers").toString().split(","))
+    }
+}
@@ -0,0 +1,193 @@
+package com.loganasherjones.mac.benchmarks;
+
+import com.loganasherjones.mac.MAC;
+import com.loganasherjones.mac.MACConfig;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.data.Mutation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long it takes to start a cluster, stop it, get a root
+ * client and make the first successful write to a freshly started cluster.
+ * <p>
+ * Every invocation uses a new cluster in its own base directory, so each
+ * measurement is a cold start. The startup phases of every cluster started
+ * by {@link #start(StoppedCluster)} and {@link #firstWrite(StoppedCluster)}
+ * are printed at the end of each trial.
+ * </p>
+ *
+ * <pre>
+ * ./gradlew :benchmarks:jmh -Pbenchmarks=ClusterLifecycleBenchmark
+ * </pre>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClusterLifecycleBenchmark {
+
+    /**
+     * The cluster configuration being measured.
+     *
+     * @since 2.1.3-2
+     */
+    @State(Scope.Benchmark)
+    public static class Settings {
+        @Param({"1", "2"})
+        public int tservers;
+
+        /**
+         * {@code spawned} runs zookeeper as a separate process,
+         * {@code embedded} runs it inside the benchmark JVM.
+         */
+        @Param({"spawned", "embedded"})
+        public String zookeeper;
+
+        @Param({"false", "true"})
+        public boolean fileLogging;
+
+        final PhaseBreakdown phases = new PhaseBreakdown();
+
+        MAC newCluster(File baseDirectory) {
+            MACConfig.MACConfigBuilder builder = new MACConfig.MACConfigBuilder()
+                    .withBaseDirectory(baseDirectory)
+                    .withNumTservers(tservers);
+            if ("embedded".equals(zookeeper)) {
+                builder.withEmbeddedZooKeeper();
+            }
+            if (fileLogging) {
+                builder.withFileLogging();
+            }
+            return new MAC(builder.build());
+        }
+
+        @TearDown(Level.Trial)
+        public void reportPhases(BenchmarkParams params) throws IOException {
+            StringBuilder label = new StringBuilder(params.getBenchmark()
+                    .substring(params.getBenchmark().lastIndexOf('.') + 1));
+            for (String key : params.getParamsKeys()) {
+                label.append('-').append(key).append('=').append(params.getParam(key));
+            }
+            phases.report(label.toString());
+        }
+    }
+
+    /**
+     * A cluster which has been configured but not started.
+     *
+     * @since 2.1.3-2
+     */
+    @State(Scope.Thread)
+    public static class StoppedCluster {
+        MAC mac;
+        private Settings settings;
+        private File baseDirectory;
+
+        @Setup(Level.Invocation)
+        public void create(Settings settings) throws IOException {
+            this.settings = settings;
+            this.baseDirectory = Files.createTempDirectory("mac-benchmark").toFile();
+            this.mac = settings.newCluster(baseDirectory);
+        }
+
+        @TearDown(Level.Invocation)
+        public void destroy() throws Exception {
+            settings.phases.add(mac.getStartupReport());
+            mac.stop();
+            deleteRecursively(baseDirectory);
+        }
+    }
+
+    /**
+     * A cluster which has already been started.
+     *
+     * @since 2.1.3-2
+     */
+    @State(Scope.Thread)
+    public static class RunningCluster {
+        MAC mac;
+        private File baseDirectory;
+
+        @Setup(Level.Invocation)
+        public void start(Settings settings) throws Exception {
+            this.baseDirectory = Files.createTempDirectory("mac-benchmark").toFile();
+            this.mac = settings.newCluster(baseDirectory);
+            mac.start();
+        }
+
+        @TearDown(Level.Invocation)
+        public void destroy() throws Exception {
+            mac.stop();
+            deleteRecursively(baseDirectory);
+        }
+    }
+
+    @Benchmark
+    public void start(StoppedCluster cluster) throws Exception {
+        cluster.mac.start();
+    }
+
+    @Benchmark
+    public void stop(RunningCluster cluster) throws Exception {
+        cluster.mac.stop();
+    }
+
+    @Benchmark
+    public String getRootClient(RunningCluster cluster) {
+        try (AccumuloClient client = cluster.mac.getRootClient()) {
+            return client.whoami();
+        }
+    }
+
+    /**
+     * From a stopped cluster to a mutation that has been durably accepted
+     * by a tablet server.
+     */
+    @Benchmark
+    public void firstWrite(StoppedCluster cluster) throws Exception {
+        cluster.mac.start();
+        try (AccumuloClient client = cluster.mac.getRootClient()) {
+            client.tableOperations().create("benchmark");
+            try (BatchWriter writer = client.createBatchWriter("benchmark")) {
+                Mutation mutation = new Mutation("row");
+                mutation.put("family", "qualifier", "value");
+                writer.addMutation(mutation);
+            }
+        }
+    }
+
+    static void deleteRecursively(File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.loganasherjones.mac.benchmarks;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks an iterator stack in-process over synthetic sorted data,
+ * without starting a cluster. {@link IteratorClusterBenchmark} runs the
+ * same stack in a tablet server for comparison.
+ * <p>
+ * {@code scan} reads every key and reports keys per second, {@code seek}
+ * reports the average cost of seeking to a random row and reading it.
+ * Allocation per key is printed at the end of each trial. To benchmark
+ * your own iterators, put them on the {@code jmh} classpath and pass a
+ * stack (see {@link IteratorStack}):
+ * </p>
+ *
+ * <pre>
+ * ./gradlew :benchmarks:jmh -Pbenchmarks=IteratorBenchmark -PiteratorStack=com.example.MyFilter
+ * </pre>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IteratorBenchmark {
+    private static final Collection<ByteSequence> ALL_FAMILIES = Collections.emptyList();
+
+    /**
+     * The data and the iterator stack being measured.
+     *
+     * @since 2.1.3-2
+     */
+    @State(Scope.Benchmark)
+    public static class Data {
+        @Param({"100000"})
+        public int rows;
+
+        @Param({"1", "10"})
+        public int columnsPerRow;
+
+        @Param({"16", "256"})
+        public int valueSize;
+
+        @Param({
+                "none",
+                "org.apache.accumulo.core.iterators.user.VersioningIterator?maxVersions=1",
+                "com.loganasherjones.mac.ExampleIterator"
+        })
+        public String stack;
+
+        SortedMap<Key, Value> data;
+        IteratorStack iterators;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            data = new SyntheticData(rows, columnsPerRow, valueSize).toSortedMap();
+            iterators = IteratorStack.parse(stack);
+        }
+    }
+
+    /**
+     * A stack built once per iteration and reseeked by every invocation,
+     * like a tablet server reusing a scan session.
+     *
+     * @since 2.1.3-2
+     */
+    @State(Scope.Thread)
+    public static class Stack {
+        SortedKeyValueIterator<Key, Value> top;
+
+        @Setup(Level.Iteration)
+        public void build(Data data) throws IOException {
+            top = data.iterators.build(data.data);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void scan(Data data, KeyCounter counter) throws IOException {
+        SortedKeyValueIterator<Key, Value> top = data.iterators.build(data.data);
+        top.seek(new Range(), ALL_FAMILIES, false);
+        counter.add(drain(top));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void seek(Data data, Stack stack, KeyCounter counter) throws IOException {
+        String row = SyntheticData.row(ThreadLocalRandom.current().nextInt(data.rows));
+        stack.top.seek(Range.exact(row), ALL_FAMILIES, false);
+        counter.add(drain(stack.top));
+    }
+
+    private static long drain(SortedKeyValueIterator<Key, Value> top) throws IOException {
+        long count = 0;
+        while (top.hasTop()) {
+            count++;
+            top.next();
+        }
+        return count;
+    }
+}
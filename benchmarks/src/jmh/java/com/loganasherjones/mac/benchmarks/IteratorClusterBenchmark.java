@@ -0,0 +1,138 @@
+package com.loganasherjones.mac.benchmarks;
+
+import com.loganasherjones.mac.MAC;
+import com.loganasherjones.mac.MACConfig;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same iterator stacks as {@link IteratorBenchmark} as scan
+ * iterators in a live cluster. The data is compacted into a file first, so
+ * scans read from an RFile like they would in production. Comparing the
+ * two shows how much of a scan is spent in the iterators themselves.
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IteratorClusterBenchmark {
+    private static final String TABLE = "iterators";
+
+    /**
+     * A running cluster holding the synthetic data.
+     *
+     * @since 2.1.3-2
+     */
+    @State(Scope.Benchmark)
+    public static class Cluster {
+        @Param({"100000"})
+        public int rows;
+
+        @Param({"1", "10"})
+        public int columnsPerRow;
+
+        @Param({"16", "256"})
+        public int valueSize;
+
+        @Param({
+                "none",
+                "org.apache.accumulo.core.iterators.user.VersioningIterator?maxVersions=1",
+                "com.loganasherjones.mac.ExampleIterator"
+        })
+        public String stack;
+
+        MAC mac;
+        AccumuloClient client;
+        IteratorStack iterators;
+        private File baseDirectory;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            baseDirectory = Files.createTempDirectory("mac-benchmark").toFile();
+            mac = new MAC(new MACConfig.MACConfigBuilder()
+                    .withBaseDirectory(baseDirectory)
+                    .withNumTservers(1)
+                    .build());
+            mac.start();
+            client = mac.getRootClient();
+            iterators = IteratorStack.parse(stack);
+
+            SyntheticData data = new SyntheticData(rows, columnsPerRow, valueSize);
+            client.tableOperations().create(TABLE);
+            try (BatchWriter writer = client.createBatchWriter(TABLE)) {
+                for (int row = 0; row < rows; row++) {
+                    writer.addMutation(data.toMutation(row));
+                }
+            }
+            client.tableOperations().compact(TABLE, null, null, true, true);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws Exception {
+            client.close();
+            mac.stop();
+            ClusterLifecycleBenchmark.deleteRecursively(baseDirectory);
+        }
+
+        Scanner newScanner() throws Exception {
+            Scanner scanner = client.createScanner(TABLE);
+            for (IteratorSetting setting : iterators.getSettings()) {
+                scanner.addScanIterator(setting);
+            }
+            return scanner;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void scan(Cluster cluster, KeyCounter counter) throws Exception {
+        try (Scanner scanner = cluster.newScanner()) {
+            counter.add(drain(scanner));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void seek(Cluster cluster, KeyCounter counter) throws Exception {
+        try (Scanner scanner = cluster.newScanner()) {
+            scanner.setRange(Range.exact(SyntheticData.row(ThreadLocalRandom.current().nextInt(cluster.rows))));
+            counter.add(drain(scanner));
+        }
+    }
+
+    private static long drain(Scanner scanner) {
+        long count = 0;
+        for (Map.Entry<Key, Value> ignored : scanner) {
+            count++;
+        }
+        return count;
+    }
+}
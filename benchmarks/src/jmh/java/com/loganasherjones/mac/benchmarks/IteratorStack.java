@@ -0,0 +1,136 @@
+package com.loganasherjones.mac.benchmarks;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * A stack of iterators described by a string, so it can be passed as a JMH
+ * parameter. Iterators are separated by commas and listed from the bottom
+ * of the stack up. Options follow a {@code ?} and are separated by {@code &}:
+ *
+ * <pre>
+ * org.apache.accumulo.core.iterators.user.VersioningIterator?maxVersions=1,com.example.MyFilter
+ * </pre>
+ *
+ * The string {@code none} is an empty stack.
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class IteratorStack {
+    private static final int FIRST_PRIORITY = 50;
+
+    private final List<IteratorSetting> settings;
+
+    private IteratorStack(List<IteratorSetting> settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Parse a stack description.
+     *
+     * @param spec - the stack description.
+     * @return the stack.
+     * @throws IllegalArgumentException if the description is malformed.
+     * @since 2.1.3-2
+     */
+    public static IteratorStack parse(String spec) {
+        if (spec.trim().isEmpty() || spec.trim().equals("none")) {
+            return new IteratorStack(Collections.emptyList());
+        }
+        List<IteratorSetting> settings = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("\\?", 2);
+            String className = parts[0];
+            String name = className.substring(className.lastIndexOf('.') + 1) + settings.size();
+            IteratorSetting setting = new IteratorSetting(FIRST_PRIORITY + settings.size(), name, className);
+            if (parts.length > 1) {
+                for (String option : parts[1].split("&")) {
+                    String[] kv = option.split("=", 2);
+                    if (kv.length != 2) {
+                        throw new IllegalArgumentException("Option " + option + " of " + className + " is not key=value");
+                    }
+                    setting.addOption(kv[0], kv[1]);
+                }
+            }
+            settings.add(setting);
+        }
+        return new IteratorStack(settings);
+    }
+
+    /**
+     * Returns the iterators as scan iterator settings, bottom of the stack
+     * first.
+     *
+     * @return the iterator settings.
+     * @since 2.1.3-2
+     */
+    public List<IteratorSetting> getSettings() {
+        return settings;
+    }
+
+    /**
+     * Build the stack on top of in-memory data, the way a tablet server
+     * would at scan time.
+     *
+     * @param data - the sorted data at the bottom of the stack.
+     * @return the top of the stack, not yet seeked.
+     * @throws IOException if an iterator fails to initialize.
+     * @since 2.1.3-2
+     */
+    public SortedKeyValueIterator<Key, Value> build(SortedMap<Key, Value> data) throws IOException {
+        SortedKeyValueIterator<Key, Value> top = new SortedMapSource(data);
+        for (IteratorSetting setting : settings) {
+            SortedKeyValueIterator<Key, Value> iterator = newIterator(setting.getIteratorClass());
+            iterator.init(top, setting.getOptions(), ScanEnvironment.INSTANCE);
+            top = iterator;
+        }
+        return top;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SortedKeyValueIterator<Key, Value> newIterator(String className) {
+        try {
+            return Class.forName(className)
+                    .asSubclass(SortedKeyValueIterator.class)
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Could not create iterator " + className, e);
+        }
+    }
+
+    private static class ScanEnvironment implements IteratorEnvironment {
+        static final ScanEnvironment INSTANCE = new ScanEnvironment();
+
+        @Override
+        public IteratorScope getIteratorScope() {
+            return IteratorScope.scan;
+        }
+
+        @Override
+        public boolean isFullMajorCompaction() {
+            return false;
+        }
+
+        @Override
+        public boolean isUserCompaction() {
+            return false;
+        }
+
+        @Override
+        public boolean isSamplingEnabled() {
+            return false;
+        }
+    }
+}
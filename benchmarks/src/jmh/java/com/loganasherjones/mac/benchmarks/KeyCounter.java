@@ -0,0 +1,62 @@
+package com.loganasherjones.mac.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the keys returned by a benchmark, which JMH reports as keys per
+ * second next to the primary result. Also tracks the bytes allocated by
+ * the benchmark thread during measurement and warmup iterations, and prints
+ * the allocation per key at the end of each trial.
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class KeyCounter {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public long keys;
+
+    private long trialKeys;
+    private long trialAllocatedBytes;
+    private long allocatedAtStart;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        keys = 0;
+        allocatedAtStart = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @TearDown(Level.Iteration)
+    public void accumulate() {
+        trialAllocatedBytes += THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedAtStart;
+        trialKeys += keys;
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        if (trialKeys > 0) {
+            System.out.printf("%nAllocated %.1f bytes per key over %d keys%n",
+                    (double) trialAllocatedBytes / trialKeys, trialKeys);
+        }
+    }
+
+    /**
+     * Count the keys returned.
+     *
+     * @param count - number of keys.
+     * @since 2.1.3-2
+     */
+    public void add(long count) {
+        keys += count;
+    }
+}
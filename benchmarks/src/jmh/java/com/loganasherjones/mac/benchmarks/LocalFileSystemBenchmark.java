@@ -0,0 +1,131 @@
+package com.loganasherjones.mac.benchmarks;
+
+import com.loganasherjones.mac.MAC;
+import com.loganasherjones.mac.MACConfig;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares hadoop's checksummed {@code LocalFileSystem} with
+ * {@code RawLocalFileSystem} (see
+ * {@link MACConfig.MACConfigBuilder#withRawLocalFileSystem()}) for writing
+ * a table and flushing it to an RFile, and for scanning it back from disk.
+ *
+ * <pre>
+ * ./gradlew :benchmarks:jmh -Pbenchmarks=LocalFileSystemBenchmark
+ * </pre>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LocalFileSystemBenchmark {
+    private static final String SCAN_TABLE = "scan";
+
+    /**
+     * A running cluster with a flushed table to scan.
+     *
+     * @since 2.1.3-2
+     */
+    @State(Scope.Benchmark)
+    public static class Cluster {
+        @Param({"false", "true"})
+        public boolean rawLocalFileSystem;
+
+        @Param({"100000"})
+        public int rows;
+
+        @Param({"10"})
+        public int columnsPerRow;
+
+        @Param({"100"})
+        public int valueSize;
+
+        MAC mac;
+        AccumuloClient client;
+        SyntheticData data;
+        int tables = 0;
+        private File baseDirectory;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            baseDirectory = Files.createTempDirectory("mac-benchmark").toFile();
+            MACConfig.MACConfigBuilder builder = new MACConfig.MACConfigBuilder()
+                    .withBaseDirectory(baseDirectory)
+                    .withNumTservers(1);
+            if (rawLocalFileSystem) {
+                builder.withRawLocalFileSystem();
+            }
+            mac = new MAC(builder.build());
+            mac.start();
+            client = mac.getRootClient();
+            data = new SyntheticData(rows, columnsPerRow, valueSize);
+            write(SCAN_TABLE);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws Exception {
+            client.close();
+            mac.stop();
+            ClusterLifecycleBenchmark.deleteRecursively(baseDirectory);
+        }
+
+        void write(String table) throws Exception {
+            client.tableOperations().create(table);
+            try (BatchWriter writer = client.createBatchWriter(table)) {
+                for (int row = 0; row < data.getRows(); row++) {
+                    writer.addMutation(data.toMutation(row));
+                }
+            }
+            client.tableOperations().flush(table, null, null, true);
+        }
+    }
+
+    /**
+     * Write every row to a new table, then wait for it to be flushed to an
+     * RFile.
+     */
+    @Benchmark
+    public void writeAndFlush(Cluster cluster) throws Exception {
+        cluster.write("write" + cluster.tables++);
+    }
+
+    /**
+     * Read every entry of a flushed table.
+     */
+    @Benchmark
+    public long scan(Cluster cluster) throws Exception {
+        long count = 0;
+        try (Scanner scanner = cluster.client.createScanner(SCAN_TABLE)) {
+            for (Map.Entry<Key, Value> ignored : scanner) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
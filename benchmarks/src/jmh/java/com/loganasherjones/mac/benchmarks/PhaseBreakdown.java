@@ -0,0 +1,93 @@
+package com.loganasherjones.mac.benchmarks;
+
+import com.loganasherjones.mac.StartupReport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the phase timings of every {@link StartupReport} seen during a
+ * benchmark trial, so a regression in {@code start()} can be traced to the
+ * phase that caused it.
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class PhaseBreakdown {
+    private final Map<String, List<Long>> durations = new LinkedHashMap<>();
+
+    /**
+     * Record the phases of one startup.
+     *
+     * @param report - the report of a cluster that has started.
+     * @since 2.1.3-2
+     */
+    public synchronized void add(StartupReport report) {
+        if (report == null) {
+            return;
+        }
+        add("total", report.getTotalNanos());
+        for (StartupReport.Phase phase : report.getPhases()) {
+            if (phase.getDurationNanos() >= 0) {
+                add(phase.getName(), phase.getDurationNanos());
+            }
+        }
+    }
+
+    /**
+     * Print the mean, min and max of every phase and write them to
+     * {@code build/results/jmh/phases-<label>.csv}.
+     *
+     * @param label - identifies the benchmark and its parameters.
+     * @throws IOException if the CSV file cannot be written.
+     * @since 2.1.3-2
+     */
+    public synchronized void report(String label) throws IOException {
+        if (durations.isEmpty()) {
+            return;
+        }
+        StringBuilder table = new StringBuilder("\nStartup phases for " + label + " (ms)\n");
+        table.append(String.format("%-30s %8s %8s %8s %5s%n", "phase", "mean", "min", "max", "n"));
+        StringBuilder csv = new StringBuilder("phase,mean_ms,min_ms,max_ms,samples\n");
+        for (Map.Entry<String, List<Long>> entry : durations.entrySet()) {
+            List<Long> values = entry.getValue();
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            long sum = 0;
+            for (long value : values) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+            }
+            double mean = toMillis(sum) / values.size();
+            table.append(String.format("%-30s %8.1f %8.1f %8.1f %5d%n",
+                    entry.getKey(), mean, toMillis(min), toMillis(max), values.size()));
+            csv.append(entry.getKey()).append(',')
+                    .append(mean).append(',')
+                    .append(toMillis(min)).append(',')
+                    .append(toMillis(max)).append(',')
+                    .append(values.size()).append('\n');
+        }
+        System.out.println(table);
+
+        File dir = new File("build/results/jmh");
+        dir.mkdirs();
+        File file = new File(dir, "phases-" + label.replaceAll("[^A-Za-z0-9_.-]", "_") + ".csv");
+        Files.write(file.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+        durations.clear();
+    }
+
+    private void add(String name, long nanos) {
+        durations.computeIfAbsent(name, k -> new ArrayList<>()).add(nanos);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,107 @@
+package com.loganasherjones.mac.benchmarks;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The bottom of an in-process iterator stack, reading from a sorted map the
+ * way a tablet server reads from its in-memory map and files.
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class SortedMapSource implements SortedKeyValueIterator<Key, Value> {
+    private final SortedMap<Key, Value> data;
+    private Iterator<Map.Entry<Key, Value>> iterator;
+    private Map.Entry<Key, Value> top;
+    private Range range;
+    private Collection<ByteSequence> columnFamilies;
+    private boolean inclusive;
+
+    /**
+     * @param data - the data to iterate over.
+     * @since 2.1.3-2
+     */
+    public SortedMapSource(SortedMap<Key, Value> data) {
+        this.data = data;
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) {
+        // The bottom of the stack reads from its map, not from another source.
+        if (source != null) {
+            throw new IllegalArgumentException("SortedMapSource does not take a source");
+        }
+    }
+
+    @Override
+    public boolean hasTop() {
+        return top != null;
+    }
+
+    @Override
+    public void next() {
+        top = null;
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Value> entry = iterator.next();
+            if (range.afterEndKey(entry.getKey())) {
+                return;
+            }
+            if (range.beforeStartKey(entry.getKey())) {
+                continue;
+            }
+            if (!columnFamilies.isEmpty()
+                    && columnFamilies.contains(entry.getKey().getColumnFamilyData()) != inclusive) {
+                continue;
+            }
+            top = entry;
+            return;
+        }
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) {
+        this.range = range;
+        this.columnFamilies = columnFamilies;
+        this.inclusive = inclusive;
+        Key start = range.getStartKey();
+        iterator = (start == null ? data : data.tailMap(start)).entrySet().iterator();
+        next();
+    }
+
+    @Override
+    public Key getTopKey() {
+        return top.getKey();
+    }
+
+    @Override
+    public Value getTopValue() {
+        return top.getValue();
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+        SortedMapSource copy = new SortedMapSource(data);
+        if (range != null) {
+            // Start the copy at the current position, like the original.
+            copy.range = range;
+            copy.columnFamilies = columnFamilies;
+            copy.inclusive = inclusive;
+            copy.iterator = top == null
+                    ? Collections.emptyIterator()
+                    : data.tailMap(top.getKey()).entrySet().iterator();
+            copy.next();
+        }
+        return copy;
+    }
+}
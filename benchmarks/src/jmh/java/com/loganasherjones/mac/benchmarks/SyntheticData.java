@@ -0,0 +1,108 @@
+package com.loganasherjones.mac.benchmarks;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Deterministic sorted data for iterator benchmarks. Every row has the
+ * same number of columns, and every value is random bytes of a fixed size.
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class SyntheticData {
+    private final int rows;
+    private final int columnsPerRow;
+    private final int valueSize;
+
+    /**
+     * @param rows - number of rows.
+     * @param columnsPerRow - number of columns in each row.
+     * @param valueSize - size of each value in bytes.
+     * @since 2.1.3-2
+     */
+    public SyntheticData(int rows, int columnsPerRow, int valueSize) {
+        this.rows = rows;
+        this.columnsPerRow = columnsPerRow;
+        this.valueSize = valueSize;
+    }
+
+    /**
+     * Returns the row id of the given row number, which sorts in row order.
+     *
+     * @param row - the row number.
+     * @return the row id.
+     * @since 2.1.3-2
+     */
+    public static String row(int row) {
+        return String.format("row%010d", row);
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows.
+     * @since 2.1.3-2
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the total number of key/value pairs.
+     *
+     * @return the total number of key/value pairs.
+     * @since 2.1.3-2
+     */
+    public long getEntries() {
+        return (long) rows * columnsPerRow;
+    }
+
+    /**
+     * Generate the data in memory.
+     *
+     * @return every key/value pair.
+     * @since 2.1.3-2
+     */
+    public SortedMap<Key, Value> toSortedMap() {
+        Random random = new Random(42);
+        SortedMap<Key, Value> data = new TreeMap<>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columnsPerRow; column++) {
+                data.put(new Key(row(row), "family", qualifier(column), 0), value(random));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Generate the data as one mutation per row.
+     *
+     * @param row - the row number.
+     * @return the mutation for the row.
+     * @since 2.1.3-2
+     */
+    public Mutation toMutation(int row) {
+        Random random = new Random(42L * rows + row);
+        Mutation mutation = new Mutation(row(row));
+        for (int column = 0; column < columnsPerRow; column++) {
+            mutation.put("family", qualifier(column), 0, value(random));
+        }
+        return mutation;
+    }
+
+    private static String qualifier(int column) {
+        return String.format("q%05d", column);
+    }
+
+    private Value value(Random random) {
+        byte[] bytes = new byte[valueSize];
+        random.nextBytes(bytes);
+        return new Value(bytes);
+    }
+}
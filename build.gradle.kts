@@ -5,6 +5,7 @@ plugins {
     id("ru.vyarus.mkdocs") version "4.0.1"
     id("ca.cutterslade.analyze") version "1.10.0"
     id("com.vanniktech.maven.publish") version "0.30.0"
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
 
 repositories {
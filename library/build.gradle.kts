@@ -31,8 +31,12 @@ dependencies {
     implementation("org.apache.accumulo:accumulo-shell:${accumuloVersion}")
     implementation("org.apache.accumulo:accumulo-tserver:${accumuloVersion}")
     implementation("org.apache.zookeeper:zookeeper:${zookeeperVersion}")
+    implementation("org.apache.thrift:libthrift:0.17.0")
     implementation("org.slf4j:slf4j-api:2.0.16")
+    implementation("io.micrometer:micrometer-core:1.12.2")
     runtimeOnly("io.dropwizard.metrics:metrics-core:4.2.30")
+    compileOnly(platform("org.junit:junit-bom:5.10.0"))
+    compileOnly("org.junit.jupiter:junit-jupiter-api")
 
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter-api")
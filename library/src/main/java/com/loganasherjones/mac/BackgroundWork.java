@@ -0,0 +1,264 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.Constants;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.clientImpl.ClientContext;
+import org.apache.accumulo.core.gc.thrift.GCMonitorService;
+import org.apache.accumulo.core.gc.thrift.GCStatus;
+import org.apache.accumulo.core.gc.thrift.GcCycleStats;
+import org.apache.accumulo.core.manager.thrift.ManagerMonitorInfo;
+import org.apache.accumulo.core.master.thrift.TableInfo;
+import org.apache.accumulo.core.rpc.ThriftUtil;
+import org.apache.accumulo.core.rpc.clients.ThriftClientTypes;
+import org.apache.accumulo.core.trace.TraceUtil;
+import org.apache.accumulo.core.util.HostAndPort;
+import org.apache.thrift.TException;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Waits for background work in a running cluster to finish.
+ * <p>
+ * Compactions are drained once no tablet server runs or queues a minor or
+ * major compaction, and no FATE operation, such as a user compaction the
+ * manager has not handed out yet, is outstanding. Garbage collection is
+ * tracked through the status the gc reports over its thrift service.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class BackgroundWork {
+    private static final Logger log = LoggerFactory.getLogger(BackgroundWork.class);
+    private static final long POLL_MS = 250;
+    private static final Pattern DESCRIPTOR = Pattern.compile("\\{[^{}]*}");
+    private static final Pattern ADDRESS = Pattern.compile("\"address\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final MAC mac;
+    private final MACConfig config;
+
+    /**
+     * Create a waiter for background work in the given cluster.
+     *
+     * @param mac - the cluster to watch.
+     * @param config - the configuration the cluster was started with.
+     * @since 2.1.3-2
+     */
+    public BackgroundWork(MAC mac, MACConfig config) {
+        this.mac = mac;
+        this.config = config;
+    }
+
+    /**
+     * Block until no compaction is running, queued or waiting in FATE on two
+     * polls in a row, so work handed from one stage to the next between
+     * polls is not missed.
+     *
+     * @param timeoutMs - total time to wait.
+     * @throws TimeoutException if compactions are still pending after the timeout.
+     * @throws AccumuloException if the servers cannot be asked.
+     * @throws AccumuloSecurityException if the root user cannot list compactions.
+     * @throws InterruptedException if interrupted while waiting.
+     * @since 2.1.3-2
+     */
+    public void awaitCompactionsDrained(long timeoutMs)
+            throws TimeoutException, AccumuloException, AccumuloSecurityException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try (AccumuloClient client = mac.getRootClient();
+             ZooKeeperConnection zk = connect(timeoutMs)) {
+            String root = instanceRoot(zk);
+            int quietPolls = 0;
+            while (true) {
+                String pending = pendingCompactions((ClientContext) client, zk, root);
+                quietPolls = pending.isEmpty() ? quietPolls + 1 : 0;
+                if (quietPolls == 2) {
+                    return;
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new TimeoutException("Compactions did not drain within " + timeoutMs + "ms: " + pending);
+                }
+                Thread.sleep(POLL_MS);
+            }
+        }
+    }
+
+    /**
+     * Block until the gc finishes a collection cycle that started after this
+     * call, so every file that was a deletion candidate before the call and
+     * is no longer referenced has been deleted.
+     *
+     * @param timeoutMs - total time to wait.
+     * @throws TimeoutException if no such cycle finished within the timeout.
+     * @throws IllegalStateException if the gc exits while waiting.
+     * @throws InterruptedException if interrupted while waiting.
+     * @since 2.1.3-2
+     */
+    public void awaitGcCycle(long timeoutMs) throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        // A cycle that started in the same millisecond may have read its candidates before the call.
+        long since = System.currentTimeMillis();
+        MACProcess gc = mac.getProcess("gc");
+        try (AccumuloClient client = mac.getRootClient();
+             ZooKeeperConnection zk = connect(timeoutMs)) {
+            String root = instanceRoot(zk);
+            while (true) {
+                GCStatus status = gcStatus((ClientContext) client, zk, root);
+                if (status != null && status.isSetLast()) {
+                    GcCycleStats last = status.getLast();
+                    if (last.getStarted() > since && last.getFinished() >= last.getStarted()) {
+                        return;
+                    }
+                }
+                if (!gc.isAlive()) {
+                    throw new IllegalStateException("The gc exited with " + gc.exitValue() + " while waiting for a cycle.");
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new TimeoutException("No gc cycle started and finished within " + timeoutMs + "ms");
+                }
+                Thread.sleep(POLL_MS);
+            }
+        } catch (IOException | KeeperException e) {
+            throw new IllegalStateException("Could not read the gc status from zookeeper", e);
+        }
+    }
+
+    private ZooKeeperConnection connect(long timeoutMs) throws InterruptedException {
+        try {
+            return ZooKeeperConnection.connect(mac.getZooKeepers(), 30000, timeoutMs);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not connect to zookeeper at " + mac.getZooKeepers(), e);
+        }
+    }
+
+    private String instanceRoot(ZooKeeperConnection zk) throws InterruptedException {
+        try {
+            String instanceId = zk.getInstanceId(config.getInstanceName(), null);
+            if (instanceId == null) {
+                throw new IllegalStateException("Instance " + config.getInstanceName() + " does not exist");
+            }
+            return ZooKeeperConnection.instancePath(instanceId);
+        } catch (KeeperException e) {
+            throw new IllegalStateException("Could not look up instance " + config.getInstanceName(), e);
+        }
+    }
+
+    /**
+     * Describes the compactions that are running, queued or waiting in FATE,
+     * or returns an empty string if there are none.
+     */
+    private static String pendingCompactions(ClientContext context, ZooKeeperConnection zk, String root)
+            throws AccumuloException, AccumuloSecurityException, InterruptedException {
+        int running = 0;
+        for (String tserver : context.instanceOperations().getTabletServers()) {
+            running += context.instanceOperations().getActiveCompactions(tserver).size();
+        }
+
+        ManagerMonitorInfo stats = ThriftClientTypes.MANAGER.execute(context,
+                client -> client.getManagerStats(TraceUtil.traceInfo(), context.rpcCreds()));
+        int queued = 0;
+        for (TableInfo table : stats.getTableMap().values()) {
+            queued += table.isSetMinors() ? table.getMinors().getQueued() : 0;
+            queued += table.isSetMajors() ? table.getMajors().getQueued() : 0;
+        }
+
+        int fate;
+        try {
+            String fatePath = root + Constants.ZFATE;
+            fate = zk.getZooKeeper().exists(fatePath, false) == null
+                    ? 0
+                    : zk.getZooKeeper().getChildren(fatePath, false).size();
+        } catch (KeeperException e) {
+            throw new AccumuloException("Could not list FATE operations", e);
+        }
+
+        List<String> pending = new ArrayList<>();
+        if (running > 0) {
+            pending.add(running + " running");
+        }
+        if (queued > 0) {
+            pending.add(queued + " queued");
+        }
+        if (fate > 0) {
+            pending.add(fate + " FATE operations");
+        }
+        return String.join(", ", pending);
+    }
+
+    /**
+     * Asks the gc holding the gc lock for its status, or returns null if
+     * there is no gc to ask yet.
+     */
+    private static GCStatus gcStatus(ClientContext context, ZooKeeperConnection zk, String root)
+            throws KeeperException, InterruptedException {
+        String address = gcAddress(zk, root + Constants.ZGC_LOCK);
+        if (address == null) {
+            return null;
+        }
+        GCMonitorService.Client client = null;
+        try {
+            client = ThriftUtil.getClient(ThriftClientTypes.GC, HostAndPort.fromString(address), context);
+            return client.getStatus(TraceUtil.traceInfo(), context.rpcCreds());
+        } catch (TException e) {
+            log.debug("Could not get the status of the gc at {}", address, e);
+            return null;
+        } finally {
+            if (client != null) {
+                ThriftUtil.returnClient(client, context);
+            }
+        }
+    }
+
+    private static String gcAddress(ZooKeeperConnection zk, String lockPath) throws KeeperException, InterruptedException {
+        if (zk.getZooKeeper().exists(lockPath, false) == null) {
+            return null;
+        }
+        List<String> nodes = zk.getZooKeeper().getChildren(lockPath, false);
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        // Lock nodes end with their sequence number, and the lowest one holds the lock.
+        nodes.sort(Comparator.comparing(node -> node.substring(node.lastIndexOf('#') + 1)));
+        try {
+            byte[] data = zk.getZooKeeper().getData(lockPath + "/" + nodes.get(0), false, null);
+            return parseGcAddress(new String(data, StandardCharsets.UTF_8));
+        } catch (KeeperException.NoNodeException e) {
+            // The gc lost its lock in between.
+            return null;
+        }
+    }
+
+    /**
+     * Lock data is a JSON list of service descriptors, or just the address
+     * in older versions.
+     */
+    static String parseGcAddress(String lockData) {
+        String data = lockData.trim();
+        if (!data.startsWith("{")) {
+            return data.isEmpty() ? null : data;
+        }
+        Matcher descriptor = DESCRIPTOR.matcher(data.substring(1));
+        while (descriptor.find()) {
+            if (descriptor.group().contains("\"GC_CLIENT\"")) {
+                Matcher address = ADDRESS.matcher(descriptor.group());
+                return address.find() ? address.group(1) : null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,288 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Manages dynamic AppCDS (class data sharing) archives for spawned JVMs.
+ * <p>
+ * Every spawned process loads thousands of the same classes from the same
+ * classpath. The first time a main class is spawned with a given
+ * classpath, the JVM is asked to dump the classes it loaded into an
+ * archive when it exits. Later spawns of the same main class map that
+ * archive instead of parsing and verifying the classes again.
+ * </p>
+ * <p>
+ * The JVM refuses to archive classes when a non-empty directory comes
+ * before the last classpath entry it loaded a class from, and only checks
+ * the entries up to that one when it maps an archive. So the classpath of
+ * a process is rearranged: directories holding classes, such as the output
+ * of a build, are copied into jars in the cache directory, keyed by their
+ * content, and take their place. Directories without classes, such as the
+ * configuration directory of a cluster, are moved after every jar, so a
+ * resource in a jar wins over one of the same name in such a directory.
+ * </p>
+ * <p>
+ * Archives are keyed by the JVM build, the jars on the classpath and the
+ * main class, so clusters with different configuration directories share
+ * them. They are only used with Java 13 or newer. If an archive is stale,
+ * for example because a jar changed, the JVM silently ignores it.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class ClassDataSharing {
+    private static final Logger log = LoggerFactory.getLogger(ClassDataSharing.class);
+    private static final int MIN_JAVA_VERSION = 13;
+
+    // Archives some process in this JVM is currently creating.
+    private static final Set<File> pendingArchives = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final File cacheDirectory;
+
+    /**
+     * Create a class data sharing manager.
+     *
+     * @param cacheDirectory - where archives are stored.
+     * @since 2.1.3-2
+     */
+    public ClassDataSharing(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Determine if the JVM used for spawned processes supports dynamic
+     * archives.
+     *
+     * @return true if dynamic archives are supported.
+     * @since 2.1.3-2
+     */
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= MIN_JAVA_VERSION;
+    }
+
+    /**
+     * Work out the classpath and JVM flags to use an archive for a process,
+     * or to create one if it does not exist yet and nobody else is
+     * creating it.
+     *
+     * @param className - the main class of the process.
+     * @param classpath - the classpath of the process.
+     * @return the archive plan for the process.
+     * @since 2.1.3-2
+     */
+    public ArchivePlan plan(String className, String classpath) {
+        if (!isSupported()) {
+            return ArchivePlan.NONE;
+        }
+
+        List<String> archived = new ArrayList<>();
+        List<String> after = new ArrayList<>();
+        try {
+            for (String entry : classpath.split(File.pathSeparator)) {
+                File file = new File(entry);
+                if (entry.isEmpty() || !file.isDirectory()) {
+                    archived.add(entry);
+                } else if (!hasClasses(file)) {
+                    after.add(entry);
+                } else {
+                    archived.add(stage(file).getAbsolutePath());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not prepare the classpath of {} for class data sharing", className, e);
+            return ArchivePlan.NONE;
+        }
+        String archivedClasspath = String.join(File.pathSeparator, archived);
+        List<String> entries = new ArrayList<>(archived);
+        entries.addAll(after);
+        String planned = String.join(File.pathSeparator, entries);
+
+        File archive = new File(cacheDirectory, archiveName(className, archivedClasspath));
+        Map<String, String> flags = new LinkedHashMap<>();
+        if (archive.isFile()) {
+            log.debug("Using class data sharing archive {} for {}", archive, className);
+            flags.put("-XX:SharedArchiveFile", archive.getAbsolutePath());
+            flags.put("-Xshare:auto", null);
+            return new ArchivePlan(planned, flags, null, null);
+        }
+
+        if (!pendingArchives.add(archive)) {
+            return new ArchivePlan(planned, Collections.emptyMap(), null, null);
+        }
+
+        cacheDirectory.mkdirs();
+        File staging = new File(cacheDirectory, archive.getName() + "." + UUID.randomUUID() + ".tmp");
+        log.debug("Creating class data sharing archive {} for {}", archive, className);
+        flags.put("-XX:ArchiveClassesAtExit", staging.getAbsolutePath());
+        return new ArchivePlan(planned, flags, staging, archive);
+    }
+
+    private static boolean hasClasses(File directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            return files.anyMatch(path -> path.toString().endsWith(".class"));
+        }
+    }
+
+    /**
+     * Copies a directory into a jar in the cache directory, named after the
+     * directory and the names, sizes and modification times of its files,
+     * so it is only copied again when something in it changed.
+     */
+    private File stage(File directory) throws IOException {
+        Path root = directory.toPath();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        MessageDigest digest = newDigest();
+        digest.update(directory.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        for (Path file : files) {
+            digest.update((byte) 0);
+            digest.update(root.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis()).getBytes(StandardCharsets.UTF_8));
+        }
+        File jar = new File(cacheDirectory, "classes-" + toHex(digest.digest()) + ".jar");
+        if (jar.isFile()) {
+            return jar;
+        }
+
+        cacheDirectory.mkdirs();
+        File staging = new File(cacheDirectory, jar.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(staging.toPath());
+                 ZipOutputStream zip = new ZipOutputStream(out)) {
+                for (Path file : files) {
+                    zip.putNextEntry(new ZipEntry(root.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, zip);
+                    zip.closeEntry();
+                }
+            }
+            Files.move(staging.toPath(), jar.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Copied {} into {} for class data sharing", directory, jar);
+        } finally {
+            staging.delete();
+        }
+        return jar;
+    }
+
+    private static String archiveName(String className, String classpath) {
+        MessageDigest digest = newDigest();
+        digest.update(System.getProperty("java.vm.version", "").getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(classpath.getBytes(StandardCharsets.UTF_8));
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        return toHex(digest.digest()) + "-" + simpleName + ".jsa";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            name.append(String.format("%02x", hash[i]));
+        }
+        return name.toString();
+    }
+
+    /**
+     * The class data sharing flags for one process, and what to do once
+     * it exits.
+     *
+     * @since 2.1.3-2
+     */
+    public static class ArchivePlan {
+        static final ArchivePlan NONE = new ArchivePlan(null, Collections.emptyMap(), null, null);
+
+        private final String classpath;
+        private final Map<String, String> jvmFlags;
+        private final File staging;
+        private final File archive;
+
+        private ArchivePlan(String classpath, Map<String, String> jvmFlags, File staging, File archive) {
+            this.classpath = classpath;
+            this.jvmFlags = jvmFlags;
+            this.staging = staging;
+            this.archive = archive;
+        }
+
+        /**
+         * Returns the classpath to start the process with.
+         *
+         * @return the rearranged classpath, or null to keep the original one.
+         * @since 2.1.3-2
+         */
+        public String getClasspath() {
+            return classpath;
+        }
+
+        /**
+         * Returns the JVM flags to add to the process. A null value means
+         * the flag takes no value.
+         *
+         * @return the JVM flags to add to the process.
+         * @since 2.1.3-2
+         */
+        public Map<String, String> getJvmFlags() {
+            return jvmFlags;
+        }
+
+        /**
+         * Publish the archive dumped by the process, if there is one. Call
+         * this once the process has exited.
+         *
+         * @since 2.1.3-2
+         */
+        public void processExited() {
+            if (archive == null) {
+                return;
+            }
+            try {
+                if (staging.isFile() && staging.length() > 0) {
+                    Files.move(staging.toPath(), archive.toPath(),
+                            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    log.info("Created class data sharing archive {}", archive);
+                } else {
+                    log.debug("No class data sharing archive was dumped to {}", staging);
+                }
+            } catch (IOException e) {
+                log.warn("Could not publish class data sharing archive {}", archive, e);
+            } finally {
+                staging.delete();
+                pendingArchives.remove(archive);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.Constants;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.metadata.RootTable;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for a started cluster to actually be able to serve requests.
+ * <p>
+ * The checks run in order:
+ * </p>
+ * <ol>
+ *     <li>Every tablet server holds its lock in zookeeper.</li>
+ *     <li>The manager holds its lock in zookeeper.</li>
+ *     <li>The root tablet has a current location.</li>
+ *     <li>Every metadata tablet has a current location.</li>
+ * </ol>
+ * <p>
+ * The first three are evaluated with zookeeper watches. Metadata tablet
+ * locations live in the root table rather than zookeeper, so the last
+ * check scans the root table with a short backoff.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class ClusterReadiness {
+    private static final Logger log = LoggerFactory.getLogger(ClusterReadiness.class);
+
+    // Column families from the accumulo metadata schema.
+    private static final String CURRENT_LOCATION_FAMILY = "loc";
+    private static final String TABLET_FAMILY = "~tab";
+
+    private final MAC mac;
+    private final MACConfig config;
+    private final StartupReport report;
+
+    /**
+     * Create a readiness check for the given cluster.
+     *
+     * @param mac - the cluster to check.
+     * @param config - the configuration the cluster was started with.
+     * @since 2.1.3-2
+     */
+    public ClusterReadiness(MAC mac, MACConfig config) {
+        this(mac, config, null);
+    }
+
+    /**
+     * Create a readiness check for the given cluster which records the
+     * time taken to reach each check as a phase.
+     *
+     * @param mac - the cluster to check.
+     * @param config - the configuration the cluster was started with.
+     * @param report - where the time to each check is recorded, may be null.
+     * @since 2.1.3-2
+     */
+    public ClusterReadiness(MAC mac, MACConfig config, StartupReport report) {
+        this.mac = mac;
+        this.config = config;
+        this.report = report;
+    }
+
+    /**
+     * Block until the cluster is serving or the timeout passes.
+     *
+     * @param timeoutMs - total time to wait.
+     * @throws TimeoutException if the cluster is not ready in time.
+     * @throws Exception if something else goes wrong.
+     * @since 2.1.3-2
+     */
+    public void await(long timeoutMs) throws Exception {
+        log.info("Waiting for tablet servers, manager and metadata to be ready.");
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        String[] milestones = {"ready:tserver-locks", "ready:manager-lock", "ready:root-tablet", "ready:metadata-tablets"};
+        if (report != null) {
+            for (String milestone : milestones) {
+                report.phaseStarted(milestone);
+            }
+        }
+
+        long remainingMs = Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1);
+        try (ZooKeeperConnection zk = ZooKeeperConnection.connect(mac.getZooKeepers(), 30000, remainingMs)) {
+            String[] instanceId = new String[1];
+            zk.await("instance " + config.getInstanceName() + " to exist", watcher -> {
+                instanceId[0] = zk.getInstanceId(config.getInstanceName(), watcher);
+                return instanceId[0] != null;
+            }, deadline);
+
+            String root = ZooKeeperConnection.instancePath(instanceId[0]);
+            zk.await(config.getNumTservers() + " tablet servers to hold their locks",
+                    watcher -> countLockedChildren(zk, root + Constants.ZTSERVERS, watcher) >= config.getNumTservers(),
+                    deadline);
+            milestoneReached(milestones[0]);
+            zk.await("manager to hold its lock",
+                    watcher -> hasChildren(zk, root + Constants.ZMANAGER_LOCK, watcher),
+                    deadline);
+            milestoneReached(milestones[1]);
+            zk.await("root tablet to be hosted",
+                    watcher -> rootTabletHasLocation(zk, root + RootTable.ZROOT_TABLET, watcher),
+                    deadline);
+            milestoneReached(milestones[2]);
+        }
+
+        awaitMetadataTablets(deadline);
+        milestoneReached(milestones[3]);
+        log.info("Cluster is ready.");
+    }
+
+    private void milestoneReached(String milestone) {
+        if (report != null) {
+            report.phaseFinished(milestone);
+        }
+    }
+
+    private int countLockedChildren(ZooKeeperConnection zk, String path, Watcher watcher)
+            throws KeeperException, InterruptedException {
+        if (zk.getZooKeeper().exists(path, watcher) == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String child : zk.getZooKeeper().getChildren(path, watcher)) {
+            if (hasChildren(zk, path + "/" + child, watcher)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasChildren(ZooKeeperConnection zk, String path, Watcher watcher)
+            throws KeeperException, InterruptedException {
+        try {
+            if (zk.getZooKeeper().exists(path, watcher) == null) {
+                return false;
+            }
+            return !zk.getZooKeeper().getChildren(path, watcher).isEmpty();
+        } catch (KeeperException.NoNodeException e) {
+            // Removed between exists and getChildren, the watch will fire.
+            return false;
+        }
+    }
+
+    private boolean rootTabletHasLocation(ZooKeeperConnection zk, String path, Watcher watcher)
+            throws KeeperException, InterruptedException {
+        if (zk.getZooKeeper().exists(path, watcher) == null) {
+            return false;
+        }
+        // The root tablet metadata is stored as json keyed by column family.
+        String json = new String(zk.getZooKeeper().getData(path, watcher, null), StandardCharsets.UTF_8);
+        return json.contains("\"" + CURRENT_LOCATION_FAMILY + "\"");
+    }
+
+    private void awaitMetadataTablets(long deadline) throws Exception {
+        long sleepMs = 10;
+        try (AccumuloClient client = mac.getRootClient()) {
+            while (true) {
+                if (allMetadataTabletsHosted(client)) {
+                    log.debug("All metadata tablets are hosted.");
+                    return;
+                }
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sleepMs) > deadline) {
+                    throw new TimeoutException("Timed out waiting for metadata tablets to be hosted");
+                }
+                Thread.sleep(sleepMs);
+                sleepMs = Math.min(sleepMs * 2, 500);
+            }
+        }
+    }
+
+    private boolean allMetadataTabletsHosted(AccumuloClient client) throws Exception {
+        Set<String> tablets = new HashSet<>();
+        Set<String> hosted = new HashSet<>();
+        try (Scanner scanner = client.createScanner(RootTable.NAME, Authorizations.EMPTY)) {
+            for (Map.Entry<Key, Value> entry : scanner) {
+                String row = entry.getKey().getRowData().toString();
+                String family = entry.getKey().getColumnFamilyData().toString();
+                if (family.equals(TABLET_FAMILY)) {
+                    tablets.add(row);
+                } else if (family.equals(CURRENT_LOCATION_FAMILY)) {
+                    hosted.add(row);
+                }
+            }
+        }
+        return !tablets.isEmpty() && hosted.containsAll(tablets);
+    }
+
+}
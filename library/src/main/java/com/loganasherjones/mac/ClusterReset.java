@@ -0,0 +1,240 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.Constants;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.NamespaceNotFoundException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Puts a running cluster back into the state it was in right after it
+ * started.
+ * <p>
+ * {@link #capture(MAC, MACConfig, long)} records which tables, namespaces
+ * and users exist in zookeeper once the cluster has started.
+ * {@link #reset(long)} then removes everything else:
+ * </p>
+ * <ol>
+ *     <li>Tables, local users, system properties and default namespace
+ *     properties (including iterator settings) are removed concurrently.</li>
+ *     <li>Namespaces are removed concurrently once their tables are gone.</li>
+ *     <li>Zookeeper is watched until only the recorded tables, namespaces
+ *     and users are left.</li>
+ * </ol>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class ClusterReset {
+    private static final Logger log = LoggerFactory.getLogger(ClusterReset.class);
+    private static final int RESET_THREADS = 8;
+
+    private final MAC mac;
+    private final String instanceId;
+    private final Set<String> tableIds;
+    private final Set<String> namespaceIds;
+    private final Set<String> users;
+
+    private ClusterReset(MAC mac, String instanceId, Set<String> tableIds, Set<String> namespaceIds, Set<String> users) {
+        this.mac = mac;
+        this.instanceId = instanceId;
+        this.tableIds = tableIds;
+        this.namespaceIds = namespaceIds;
+        this.users = users;
+    }
+
+    /**
+     * Record the current tables, namespaces and users of the cluster as
+     * its initial state.
+     *
+     * @param mac - the started cluster.
+     * @param config - the configuration the cluster was started with.
+     * @param timeoutMs - time to wait for zookeeper.
+     * @return a reset that returns the cluster to the recorded state.
+     * @throws Exception if zookeeper cannot be read.
+     * @since 2.1.3-2
+     */
+    public static ClusterReset capture(MAC mac, MACConfig config, long timeoutMs) throws Exception {
+        try (ZooKeeperConnection zk = ZooKeeperConnection.connect(mac.getZooKeepers(), 30000, timeoutMs)) {
+            String instanceId = zk.getInstanceId(config.getInstanceName(), null);
+            if (instanceId == null) {
+                throw new IllegalStateException("Instance " + config.getInstanceName() + " does not exist in zookeeper");
+            }
+            String root = ZooKeeperConnection.instancePath(instanceId);
+            return new ClusterReset(
+                    mac,
+                    instanceId,
+                    children(zk, root + Constants.ZTABLES, null),
+                    children(zk, root + Constants.ZNAMESPACES, null),
+                    children(zk, root + Constants.ZUSERS, null)
+            );
+        }
+    }
+
+    /**
+     * Remove everything created since {@link #capture(MAC, MACConfig, long)}
+     * and wait for zookeeper to reflect it.
+     *
+     * @param timeoutMs - total time to wait for the cluster to be reset.
+     * @throws java.util.concurrent.TimeoutException if zookeeper does not
+     * reach the initial state in time.
+     * @throws Exception if something else goes wrong.
+     * @since 2.1.3-2
+     */
+    public void reset(long timeoutMs) throws Exception {
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        ExecutorService executor = createExecutor();
+        try (AccumuloClient client = mac.getRootClient()) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Map.Entry<String, String> table : client.tableOperations().tableIdMap().entrySet()) {
+                if (!tableIds.contains(table.getValue())) {
+                    tasks.add(() -> deleteTable(client, table.getKey()));
+                }
+            }
+            for (String user : client.securityOperations().listLocalUsers()) {
+                if (!users.contains(user)) {
+                    tasks.add(() -> {
+                        log.debug("Dropping user {}", user);
+                        client.securityOperations().dropLocalUser(user);
+                        return null;
+                    });
+                }
+            }
+            tasks.add(() -> resetSystemProperties(client));
+            tasks.add(() -> resetDefaultNamespaceProperties(client));
+            runAll(executor, tasks);
+
+            tasks.clear();
+            for (Map.Entry<String, String> namespace : client.namespaceOperations().namespaceIdMap().entrySet()) {
+                if (!namespaceIds.contains(namespace.getValue())) {
+                    tasks.add(() -> deleteNamespace(client, namespace.getKey()));
+                }
+            }
+            runAll(executor, tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        awaitInitialState(deadline, timeoutMs);
+        log.info("Cluster reset in {}ms.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private Void deleteTable(AccumuloClient client, String table) throws Exception {
+        log.debug("Deleting table {}", table);
+        try {
+            client.tableOperations().delete(table);
+        } catch (TableNotFoundException e) {
+            // Already gone.
+        }
+        return null;
+    }
+
+    private Void deleteNamespace(AccumuloClient client, String namespace) throws Exception {
+        log.debug("Deleting namespace {}", namespace);
+        try {
+            client.namespaceOperations().delete(namespace);
+        } catch (NamespaceNotFoundException e) {
+            // Already gone.
+        }
+        return null;
+    }
+
+    /**
+     * Anything in the system configuration that does not match the site
+     * configuration was set through the API and lives in zookeeper.
+     */
+    private Void resetSystemProperties(AccumuloClient client) throws Exception {
+        Map<String, String> system = client.instanceOperations().getSystemConfiguration();
+        Map<String, String> site = client.instanceOperations().getSiteConfiguration();
+        for (Map.Entry<String, String> property : system.entrySet()) {
+            String key = property.getKey();
+            if (Property.isValidZooPropertyKey(key) && !Objects.equals(property.getValue(), site.get(key))) {
+                log.debug("Removing system property {}", key);
+                client.instanceOperations().removeProperty(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The default namespace cannot be deleted, but properties and
+     * iterators set on it apply to every new table, so they are removed.
+     */
+    private Void resetDefaultNamespaceProperties(AccumuloClient client) throws Exception {
+        String namespace = client.namespaceOperations().defaultNamespace();
+        Map<String, String> system = client.instanceOperations().getSystemConfiguration();
+        for (Map.Entry<String, String> property : client.namespaceOperations().getConfiguration(namespace).entrySet()) {
+            if (!Objects.equals(property.getValue(), system.get(property.getKey()))) {
+                log.debug("Removing default namespace property {}", property.getKey());
+                client.namespaceOperations().removeProperty(namespace, property.getKey());
+            }
+        }
+        return null;
+    }
+
+    private void awaitInitialState(long deadline, long timeoutMs) throws Exception {
+        try (ZooKeeperConnection zk = ZooKeeperConnection.connect(mac.getZooKeepers(), 30000, timeoutMs)) {
+            String root = ZooKeeperConnection.instancePath(instanceId);
+            zk.await("tables, namespaces and users to match the initial state", watcher ->
+                    tableIds.containsAll(children(zk, root + Constants.ZTABLES, watcher))
+                            && namespaceIds.containsAll(children(zk, root + Constants.ZNAMESPACES, watcher))
+                            && users.containsAll(children(zk, root + Constants.ZUSERS, watcher)),
+                    deadline);
+        }
+    }
+
+    private static Set<String> children(ZooKeeperConnection zk, String path, Watcher watcher)
+            throws KeeperException, InterruptedException {
+        try {
+            return new HashSet<>(zk.getZooKeeper().getChildren(path, watcher));
+        } catch (KeeperException.NoNodeException e) {
+            return Collections.emptySet();
+        }
+    }
+
+    private static void runAll(ExecutorService executor, List<Callable<Void>> tasks) throws Exception {
+        List<Future<Void>> futures = executor.invokeAll(tasks);
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(RESET_THREADS, r -> {
+            Thread t = new Thread(r, "mac-reset-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
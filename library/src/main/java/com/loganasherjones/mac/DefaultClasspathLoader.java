@@ -27,6 +27,8 @@ public class DefaultClasspathLoader implements ClasspathLoader {
     private static final Logger log = LoggerFactory.getLogger(DefaultClasspathLoader.class);
 
     private final List<String> extraClasspath;
+    private String cachedKey;
+    private String cachedClasspath;
 
     /**
      * Create a default classpath loader.
@@ -37,9 +39,24 @@ public class DefaultClasspathLoader implements ClasspathLoader {
         this.extraClasspath = extraClasspath;
     }
 
-    public String getClasspath() throws IOException {
+    /**
+     * Returns the classpath, reusing the previous result as long as the
+     * classloader URLs, java.class.path and extra classpath are unchanged.
+     * This avoids scanning every classpath directory for site files on
+     * each call.
+     *
+     * @return Classpath string fit for the -cp flag.
+     * @throws IOException If something goes wrong loading the classpath.
+     */
+    public synchronized String getClasspath() throws IOException {
+        List<ClassLoader> classloaders = getClassLoaders();
+        String key = cacheKey(classloaders);
+        if (key.equals(cachedKey)) {
+            return cachedClasspath;
+        }
+
         StringBuilder classpathBuilder = new StringBuilder();
-        appendDefaultClasspath(classpathBuilder, getClassLoaders());
+        appendDefaultClasspath(classpathBuilder, classloaders);
         if (this.extraClasspath != null && !this.extraClasspath.isEmpty()) {
             for (String s : extraClasspath) {
                 classpathBuilder.append(File.pathSeparator).append(s);
@@ -49,9 +66,37 @@ public class DefaultClasspathLoader implements ClasspathLoader {
         String classpath = classpathBuilder.toString();
         log.trace("Classpath for spawned processes:");
         log.trace(classpath);
+        cachedKey = key;
+        cachedClasspath = classpath;
         return classpath;
     }
 
+    /**
+     * Forget the cached classpath. Only needed if site files were added to
+     * or removed from a classpath directory, since that is not part of the
+     * cache key.
+     *
+     * @since 2.1.3-2
+     */
+    public synchronized void invalidate() {
+        cachedKey = null;
+        cachedClasspath = null;
+    }
+
+    private String cacheKey(List<ClassLoader> classloaders) {
+        StringBuilder key = new StringBuilder();
+        for (ClassLoader classLoader : classloaders) {
+            if (classLoader instanceof URLClassLoader) {
+                for (URL u : ((URLClassLoader) classLoader).getURLs()) {
+                    key.append(u).append('\n');
+                }
+            }
+        }
+        key.append(System.getProperty("java.class.path")).append('\n');
+        key.append(extraClasspath);
+        return key.toString();
+    }
+
     private void appendDefaultClasspath(StringBuilder classpathBuilder, List<ClassLoader> classloaders) throws IOException {
         try {
             // assume 0 is the system classloader and skip it
@@ -0,0 +1,185 @@
+package com.loganasherjones.mac;
+
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A single node zookeeper server hosted inside the current JVM.
+ * <p>
+ * This avoids forking a JVM for zookeeper and waiting for it to answer
+ * {@code ruok}: once {@link #start()} returns the server is bound and
+ * serving.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class EmbeddedZooKeeper implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedZooKeeper.class);
+    private static final String FORCE_SYNC_PROPERTY = "zookeeper.forceSync";
+    /**
+     * zoo.cfg settings that are applied, or that do not matter to a server
+     * in this JVM. Any other setting is ignored with a warning.
+     */
+    private static final Set<String> HONORED_SETTINGS = new HashSet<>(Arrays.asList(
+            "tickTime", "maxClientCnxns", "forceSync", "minSessionTimeout", "maxSessionTimeout",
+            "clientPort", "dataDir", "4lw.commands.whitelist"
+    ));
+
+    private final String host;
+    private final int port;
+    private final File dataDirectory;
+    private final int tickTime;
+    private final int maxClientCnxns;
+    private final boolean forceSync;
+    private final int minSessionTimeout;
+    private final int maxSessionTimeout;
+    private ZooKeeperServer server;
+    private ServerCnxnFactory connectionFactory;
+
+    /**
+     * Create an embedded zookeeper. Nothing is started until
+     * {@link #start()} is called.
+     *
+     * @param host - address to bind to.
+     * @param port - port to bind to, 0 picks a free port.
+     * @param dataDirectory - where snapshots and transaction logs are written.
+     * @param tickTime - zookeeper tick time in milliseconds.
+     * @param maxClientCnxns - max connections per client address.
+     * @param forceSync - whether to fsync the transaction log on every write.
+     * @param minSessionTimeout - minimum session timeout in milliseconds, -1 for 2 ticks.
+     * @param maxSessionTimeout - maximum session timeout in milliseconds, -1 for 20 ticks.
+     * @since 2.1.3-2
+     */
+    public EmbeddedZooKeeper(String host, int port, File dataDirectory, int tickTime, int maxClientCnxns,
+                             boolean forceSync, int minSessionTimeout, int maxSessionTimeout) {
+        this.host = host;
+        this.port = port;
+        this.dataDirectory = dataDirectory;
+        this.tickTime = tickTime;
+        this.maxClientCnxns = maxClientCnxns;
+        this.forceSync = forceSync;
+        this.minSessionTimeout = minSessionTimeout;
+        this.maxSessionTimeout = maxSessionTimeout;
+    }
+
+    /**
+     * Create an embedded zookeeper from the cluster configuration. The
+     * tickTime, maxClientCnxns, forceSync, minSessionTimeout and
+     * maxSessionTimeout zoo.cfg settings are honored, and other settings
+     * are ignored with a warning. Unless forceSync is set in zoo.cfg, the
+     * transaction log is not fsync'd since test clusters do not need crash
+     * durability.
+     *
+     * @param config - the cluster configuration.
+     * @return an embedded zookeeper, not yet started.
+     * @since 2.1.3-2
+     */
+    public static EmbeddedZooKeeper fromConfig(MACConfig config) {
+        Map<String, String> zooCfg = config.getZooKeeperProperties();
+        for (String key : zooCfg.keySet()) {
+            if (!HONORED_SETTINGS.contains(key)) {
+                log.warn("Embedded zookeeper ignores the zoo.cfg setting {}", key);
+            }
+        }
+        return new EmbeddedZooKeeper(
+                config.getZooKeeperHost(),
+                config.getZooKeeperPort(),
+                config.getZooKeeperDataDirectory(),
+                Integer.parseInt(zooCfg.getOrDefault("tickTime", "2000")),
+                Integer.parseInt(zooCfg.getOrDefault("maxClientCnxns", "1000")),
+                "yes".equalsIgnoreCase(zooCfg.getOrDefault("forceSync", "no")),
+                Integer.parseInt(zooCfg.getOrDefault("minSessionTimeout", "-1")),
+                Integer.parseInt(zooCfg.getOrDefault("maxSessionTimeout", "-1"))
+        );
+    }
+
+    /**
+     * Start the server and wait until it is bound.
+     *
+     * @throws IOException if the server cannot start or bind.
+     * @throws InterruptedException if interrupted while starting.
+     * @since 2.1.3-2
+     */
+    public synchronized void start() throws IOException, InterruptedException {
+        if (server != null) {
+            return;
+        }
+        log.info("Starting embedded zookeeper on {}:{}", host, port);
+        dataDirectory.mkdirs();
+        server = createServer();
+        server.setMinSessionTimeout(minSessionTimeout);
+        server.setMaxSessionTimeout(maxSessionTimeout);
+        connectionFactory = ServerCnxnFactory.createFactory(new InetSocketAddress(host, port), maxClientCnxns);
+        connectionFactory.startup(server);
+        log.info("Embedded zookeeper is serving on port {}", getPort());
+    }
+
+    /**
+     * The transaction log only reads forceSync from a system property, once,
+     * when it is created. The property is restored right after, so other
+     * zookeeper servers and clients in this JVM are not affected.
+     */
+    private ZooKeeperServer createServer() throws IOException {
+        synchronized (EmbeddedZooKeeper.class) {
+            String previous = System.getProperty(FORCE_SYNC_PROPERTY);
+            System.setProperty(FORCE_SYNC_PROPERTY, forceSync ? "yes" : "no");
+            try {
+                return new ZooKeeperServer(dataDirectory, dataDirectory, tickTime);
+            } finally {
+                if (previous == null) {
+                    System.clearProperty(FORCE_SYNC_PROPERTY);
+                } else {
+                    System.setProperty(FORCE_SYNC_PROPERTY, previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return the port the server is bound to.
+     * @since 2.1.3-2
+     */
+    public synchronized int getPort() {
+        if (connectionFactory == null) {
+            throw new IllegalStateException("Embedded zookeeper is not started");
+        }
+        return connectionFactory.getLocalPort();
+    }
+
+    /**
+     * Stop the server. Safe to call more than once.
+     *
+     * @since 2.1.3-2
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        log.info("Stopping embedded zookeeper");
+        connectionFactory.shutdown();
+        server.shutdown();
+        connectionFactory = null;
+        server = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
@@ -0,0 +1,122 @@
+package com.loganasherjones.mac;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * A bounded in-memory byte pipe connecting an {@link InJvmProcess} to the
+ * thread reading its output.
+ * <p>
+ * Unlike {@link java.io.PipedInputStream}, any number of threads may
+ * write to it, and writers dying does not break the pipe. Writes block
+ * while the buffer is full. Once closed, the reader sees end of stream
+ * after draining the buffer and further writes are discarded.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+class InJvmPipe {
+    private static final int CAPACITY = 64 * 1024;
+
+    private final byte[] buffer = new byte[CAPACITY];
+    private int readPos = 0;
+    private int size = 0;
+    private boolean closed = false;
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return InJvmPipe.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            synchronized (InJvmPipe.this) {
+                return size;
+            }
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            InJvmPipe.this.write(b, off, len);
+        }
+    };
+
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    private synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (size == 0) {
+            if (closed) {
+                return -1;
+            }
+            waitForChange();
+        }
+        int n = Math.min(len, size);
+        int first = Math.min(n, CAPACITY - readPos);
+        System.arraycopy(buffer, readPos, b, off, first);
+        System.arraycopy(buffer, 0, b, off + first, n - first);
+        readPos = (readPos + n) % CAPACITY;
+        size -= n;
+        notifyAll();
+        return n;
+    }
+
+    private synchronized void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (closed) {
+                return;
+            }
+            if (size == CAPACITY) {
+                waitForChange();
+                continue;
+            }
+            int writePos = (readPos + size) % CAPACITY;
+            int n = Math.min(len, Math.min(CAPACITY - size, CAPACITY - writePos));
+            System.arraycopy(b, off, buffer, writePos, n);
+            size += n;
+            off += n;
+            len -= n;
+            notifyAll();
+        }
+    }
+
+    private void waitForChange() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on pipe");
+        }
+    }
+}
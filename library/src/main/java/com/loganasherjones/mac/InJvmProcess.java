@@ -0,0 +1,629 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Process} that runs a class's {@code main} method inside the
+ * current JVM.
+ * <p>
+ * Each process gets its own {@link URLClassLoader} built from the same
+ * classpath a forked process would get, and its own {@link ThreadGroup}.
+ * Anything written to {@link System#out} or {@link System#err} by a thread
+ * in that group is routed to this process's output streams, so the usual
+ * {@link LogPump} plumbing works unchanged. Its {@code -D} JVM properties
+ * are only seen by its own threads: {@link System#getProperty(String)}
+ * returns them to threads in the group, and {@link System#setProperty}
+ * from those threads only changes the process's own copy.
+ * </p>
+ * <p>
+ * To do so, the JVM-wide {@link System#out}, {@link System#err}, system
+ * properties and {@link SecurityManager} are replaced while any in-JVM
+ * process runs, and restored once the last one exits, unless something
+ * else replaced them in the meantime. The replacements pass through to the
+ * originals for every other thread.
+ * </p>
+ * <p>
+ * Some things cannot be isolated inside one JVM:
+ * </p>
+ * <ul>
+ *     <li>JVM flags other than {@code -D} properties are ignored, and
+ *     iterating {@link System#getProperties()} only shows JVM-wide
+ *     properties.</li>
+ *     <li>Environment variables cannot be changed and are ignored.</li>
+ *     <li>{@link #destroy()} shuts zookeeper down through its server API,
+ *     and interrupts the threads of every other process. A process only
+ *     counts as exited once its {@code main} method has returned and its
+ *     non-daemon threads have finished, so a process that ignores the
+ *     interrupt stays alive. Accumulo servers have to be stopped through
+ *     the manager instead, which {@link MAC#stop()} does.</li>
+ *     <li>Daemon threads left behind by an exited process are interrupted,
+ *     but may keep running until the JVM exits.</li>
+ *     <li>Calls to {@code System.exit} and {@code Runtime.halt} from a
+ *     process are trapped with a {@link SecurityManager} when the running
+ *     JVM still allows installing one, which Java 18 and newer only do
+ *     with {@code -Djava.security.manager=allow}. Otherwise, they stop the
+ *     whole JVM, so processes known to exit are refused, see
+ *     {@link #canRun(String)}.</li>
+ * </ul>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class InJvmProcess extends Process {
+    private static final Logger log = LoggerFactory.getLogger(InJvmProcess.class);
+
+    private static final int EXIT_DESTROYED = 143;
+    private static final long DESTROY_TIMEOUT_MS = 10_000;
+    private static final String ZOOKEEPER_MAIN = "org.apache.zookeeper.server.ZooKeeperServerMain";
+    // Main classes that end by calling System.exit.
+    private static final Set<String> EXITING_MAIN_CLASSES = new HashSet<>(Arrays.asList(
+            "org.apache.accumulo.server.init.Initialize",
+            "org.apache.accumulo.manager.state.SetGoalState"
+    ));
+    private static final Map<ThreadGroup, InJvmProcess> running = new ConcurrentHashMap<>();
+    // Guarded by InJvmProcess.class. The JVM-wide replacements, installed
+    // while any in-JVM process runs.
+    private static int installedFor = 0;
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+    private static Properties originalProperties;
+    private static PrintStream routingOut;
+    private static PrintStream routingErr;
+    private static RoutingProperties routingProperties;
+    private static ExitTrappingSecurityManager exitTrapper;
+    private static volatile boolean exitsTrapped = false;
+
+    private final String processName;
+    private final ThreadGroup threadGroup;
+    private final URLClassLoader classLoader;
+    private final InJvmPipe stdout = new InJvmPipe();
+    private final InJvmPipe stderr = new InJvmPipe();
+    private final Map<String, String> systemProperties = new ConcurrentHashMap<>();
+    private final CountDownLatch exited = new CountDownLatch(1);
+    private volatile int exitCode = -1;
+    private volatile Integer requestedExitCode = null;
+    private volatile boolean destroyed = false;
+    private volatile Runnable shutdown = null;
+
+    private InJvmProcess(String processName, URLClassLoader classLoader) {
+        this.processName = processName;
+        this.classLoader = classLoader;
+        this.threadGroup = new ThreadGroup(processName);
+    }
+
+    /**
+     * Determine if a main class can run in this JVM. Classes that end by
+     * calling {@code System.exit} can only run here when the exit can be
+     * trapped.
+     *
+     * @param className - fully-qualified name of the main class.
+     * @return true if the class can run in this JVM.
+     * @since 2.1.3-2
+     */
+    public static boolean canRun(String className) {
+        return canTrapExits() || !EXITING_MAIN_CLASSES.contains(className);
+    }
+
+    /**
+     * Determine if calls to {@code System.exit} from in-JVM processes are
+     * trapped.
+     *
+     * @return true if exits are trapped.
+     */
+    static synchronized boolean canTrapExits() {
+        if (installedFor > 0) {
+            return exitsTrapped;
+        }
+        // Java 18 and newer only allow installing one when started with
+        // -Djava.security.manager=allow, or with a security manager already.
+        String setting = System.getProperty("java.security.manager");
+        if ("disallow".equals(setting)) {
+            return false;
+        }
+        return Runtime.version().feature() < 18 || (setting != null && !setting.isEmpty());
+    }
+
+    /**
+     * Start running the main method of the given class in this JVM.
+     *
+     * @param processName - name of the process, used for the thread group.
+     * @param className - fully-qualified name of the class to run as main.
+     * @param args - arguments to main.
+     * @param classpath - classpath string, as would be passed to -cp.
+     * @param jvmProperties - JVM properties. Only -D properties are applied.
+     * @param environment - ignored, logged if not empty.
+     * @return the started process.
+     * @throws IOException if the classpath is invalid.
+     * @throws IllegalStateException if the class cannot run in this JVM,
+     * see {@link #canRun(String)}.
+     * @since 2.1.3-2
+     */
+    public static InJvmProcess start(
+            String processName,
+            String className,
+            List<String> args,
+            String classpath,
+            Map<String, String> jvmProperties,
+            Map<String, String> environment
+    ) throws IOException {
+        install();
+        InJvmProcess process;
+        try {
+            if (!canRun(className)) {
+                throw new IllegalStateException("Cannot run " + className + " in this JVM, since its call to "
+                        + "System.exit cannot be trapped. Start the JVM with -Djava.security.manager=allow.");
+            }
+            process = new InJvmProcess(processName, createClassLoader(classpath));
+        } catch (IOException | RuntimeException e) {
+            uninstall();
+            throw e;
+        }
+        process.applyJvmProperties(jvmProperties);
+        if (!environment.isEmpty()) {
+            log.debug("Environment variables cannot be set for in-JVM process {}: {}", processName, environment.keySet());
+        }
+        running.put(process.threadGroup, process);
+        Thread main = new Thread(process.threadGroup, () -> process.runMain(className, args), processName + "-main");
+        main.setContextClassLoader(process.classLoader);
+        main.start();
+        return process;
+    }
+
+    private void runMain(String className, List<String> args) {
+        int code = 0;
+        try {
+            Class<?> mainClass = Class.forName(className, true, classLoader);
+            trapZooKeeperExits();
+            if (className.equals(ZOOKEEPER_MAIN)) {
+                runZooKeeper(mainClass, args);
+            } else {
+                Method main = mainClass.getMethod("main", String[].class);
+                main.invoke(null, (Object) args.toArray(new String[0]));
+            }
+        } catch (InvocationTargetException e) {
+            if (requestedExitCode == null) {
+                log.error("In-JVM process {} failed", processName, e.getCause());
+            }
+            code = 1;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.error("Could not run in-JVM process {}", processName, e);
+            code = 1;
+        }
+        Integer requested = requestedExitCode;
+        if (requested != null) {
+            code = requested;
+        } else {
+            // Like a JVM, the process lives on until its non-daemon threads finish.
+            awaitNonDaemonThreads();
+            if (destroyed) {
+                code = EXIT_DESTROYED;
+            }
+        }
+        markExited(code);
+    }
+
+    /**
+     * Runs zookeeper through an instance of its main class rather than its
+     * static main method, so {@link #destroy()} can shut the server down and
+     * release its ports.
+     */
+    private void runZooKeeper(Class<?> mainClass, List<String> args) throws ReflectiveOperationException {
+        Object server = mainClass.getConstructor().newInstance();
+        Method stop = mainClass.getDeclaredMethod("shutdown");
+        stop.setAccessible(true);
+        Method run = mainClass.getDeclaredMethod("initializeAndRun", String[].class);
+        run.setAccessible(true);
+        shutdown = () -> {
+            try {
+                stop.invoke(server);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Could not shut down in-JVM zookeeper {}", processName, e);
+            }
+        };
+        run.invoke(server, (Object) args.toArray(new String[0]));
+    }
+
+    private void awaitNonDaemonThreads() {
+        boolean interrupted = false;
+        while (true) {
+            Thread waitFor = null;
+            for (Thread thread : liveThreads()) {
+                if (thread != Thread.currentThread() && !thread.isDaemon()) {
+                    waitFor = thread;
+                    break;
+                }
+            }
+            if (waitFor == null) {
+                break;
+            }
+            try {
+                waitFor.join();
+            } catch (InterruptedException e) {
+                // Interrupts are for the process's threads, keep waiting.
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Thread> liveThreads() {
+        Thread[] threads = new Thread[threadGroup.activeCount() * 2 + 16];
+        int count = threadGroup.enumerate(threads, true);
+        List<Thread> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive()) {
+                result.add(threads[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Zookeeper routes its exits through a replaceable procedure, so that
+     * can be redirected without relying on a {@link SecurityManager}.
+     */
+    private void trapZooKeeperExits() {
+        try {
+            Class<?> serviceUtils = Class.forName("org.apache.zookeeper.util.ServiceUtils", true, classLoader);
+            Consumer<Integer> exitProcedure = this::exitRequested;
+            serviceUtils.getMethod("setSystemExitProcedure", Consumer.class).invoke(null, exitProcedure);
+        } catch (ClassNotFoundException e) {
+            // Not a zookeeper process.
+        } catch (ReflectiveOperationException e) {
+            log.debug("Could not redirect zookeeper exits for {}", processName, e);
+        }
+    }
+
+    private void exitRequested(int code) {
+        log.info("In-JVM process {} requested exit with code {}", processName, code);
+        if (requestedExitCode == null) {
+            requestedExitCode = code;
+        }
+        threadGroup.interrupt();
+    }
+
+    private synchronized void markExited(int code) {
+        if (exited.getCount() == 0) {
+            return;
+        }
+        exitCode = code;
+        running.remove(threadGroup);
+        stdout.close();
+        stderr.close();
+        List<Thread> leftover = liveThreads();
+        leftover.remove(Thread.currentThread());
+        if (leftover.isEmpty()) {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                log.debug("Could not close classloader for {}", processName, e);
+            }
+        } else {
+            // Closing the classloader under running threads breaks their class loading.
+            log.debug("In-JVM process {} left {} daemon threads running", processName, leftover.size());
+            threadGroup.interrupt();
+        }
+        uninstall();
+        exited.countDown();
+    }
+
+    /**
+     * Returns the thread group all threads of this process belong to.
+     *
+     * @return the thread group all threads of this process belong to.
+     * @since 2.1.3-2
+     */
+    public ThreadGroup getThreadGroup() {
+        return threadGroup;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stdout.getInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return stderr.getInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        exited.await();
+        return exitCode;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return exited.await(timeout, unit);
+    }
+
+    @Override
+    public int exitValue() {
+        if (exited.getCount() != 0) {
+            throw new IllegalThreadStateException("In-JVM process " + processName + " has not exited");
+        }
+        return exitCode;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return exited.getCount() != 0;
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            if (!destroy(DESTROY_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("In-JVM process {} is still running after being destroyed.", processName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Shut the process down and wait for it to exit. The process is only
+     * marked as exited if it really stopped.
+     *
+     * @param timeout - the maximum time to wait.
+     * @param unit - the unit of the timeout.
+     * @return true if the process exited.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean destroy(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!isAlive()) {
+            return true;
+        }
+        destroyed = true;
+        Runnable stop = shutdown;
+        if (stop != null) {
+            log.debug("Shutting down in-JVM process {}", processName);
+            stop.run();
+        }
+        log.debug("Interrupting threads of in-JVM process {}", processName);
+        threadGroup.interrupt();
+        return exited.await(timeout, unit);
+    }
+
+    private static URLClassLoader createClassLoader(String classpath) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                urls.add(new File(entry).toURI().toURL());
+            }
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader());
+    }
+
+    private void applyJvmProperties(Map<String, String> jvmProperties) {
+        for (Map.Entry<String, String> entry : jvmProperties.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith("-D")) {
+                systemProperties.put(key.substring(2), entry.getValue() == null ? "" : entry.getValue());
+            } else {
+                log.warn("Ignoring JVM flag {} for in-JVM process {}", key, processName);
+            }
+        }
+    }
+
+    private static InJvmProcess currentProcess() {
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        while (group != null) {
+            InJvmProcess process = running.get(group);
+            if (process != null) {
+                return process;
+            }
+            group = group.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the JVM-wide streams, system properties and security manager
+     * for the first running in-JVM process.
+     */
+    @SuppressWarnings("removal")
+    private static synchronized void install() {
+        if (installedFor++ > 0) {
+            return;
+        }
+        originalOut = System.out;
+        originalErr = System.err;
+        originalProperties = System.getProperties();
+        routingOut = new PrintStream(new RoutingOutputStream(originalOut, true), true);
+        routingErr = new PrintStream(new RoutingOutputStream(originalErr, false), true);
+        routingProperties = new RoutingProperties(originalProperties);
+        System.setOut(routingOut);
+        System.setErr(routingErr);
+        System.setProperties(routingProperties);
+
+        try {
+            exitTrapper = new ExitTrappingSecurityManager(System.getSecurityManager());
+            System.setSecurityManager(exitTrapper);
+            exitsTrapped = true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            exitTrapper = null;
+            exitsTrapped = false;
+            log.warn("Could not install a SecurityManager to trap exits from in-JVM processes. "
+                    + "Processes that call System.exit will be refused. ({})", e.getMessage());
+        }
+    }
+
+    /**
+     * Puts back what {@link #install()} replaced once the last in-JVM
+     * process is gone, unless something else replaced it since.
+     */
+    @SuppressWarnings("removal")
+    private static synchronized void uninstall() {
+        if (--installedFor > 0) {
+            return;
+        }
+        if (exitTrapper != null && System.getSecurityManager() == exitTrapper) {
+            try {
+                System.setSecurityManager(exitTrapper.delegate);
+            } catch (SecurityException e) {
+                log.warn("Could not restore the SecurityManager replaced for in-JVM processes", e);
+            }
+        }
+        exitTrapper = null;
+        exitsTrapped = false;
+        if (System.getProperties() == routingProperties) {
+            // Keep what the rest of the JVM changed in the meantime.
+            originalProperties.clear();
+            originalProperties.putAll(routingProperties);
+            System.setProperties(originalProperties);
+        }
+        if (System.out == routingOut) {
+            System.setOut(originalOut);
+        }
+        if (System.err == routingErr) {
+            System.setErr(originalErr);
+        }
+        routingOut = null;
+        routingErr = null;
+        routingProperties = null;
+        originalProperties = null;
+    }
+
+    /**
+     * System properties that show each in-JVM process its own {@code -D}
+     * properties, and keep the properties it sets to itself.
+     */
+    private static class RoutingProperties extends Properties {
+        RoutingProperties(Properties original) {
+            putAll(original);
+        }
+
+        @Override
+        public String getProperty(String key) {
+            InJvmProcess process = currentProcess();
+            if (process != null) {
+                String value = process.systemProperties.get(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return super.getProperty(key);
+        }
+
+        @Override
+        public synchronized Object setProperty(String key, String value) {
+            InJvmProcess process = currentProcess();
+            if (process != null) {
+                String previous = process.systemProperties.put(key, value);
+                return previous != null ? previous : super.getProperty(key);
+            }
+            return super.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Sends bytes to the stream of the in-JVM process the writing thread
+     * belongs to, or to the original stream for every other thread.
+     */
+    private static class RoutingOutputStream extends OutputStream {
+        private final OutputStream fallback;
+        private final boolean stdout;
+
+        RoutingOutputStream(OutputStream fallback, boolean stdout) {
+            this.fallback = fallback;
+            this.stdout = stdout;
+        }
+
+        private OutputStream target() {
+            InJvmProcess process = currentProcess();
+            if (process == null) {
+                return fallback;
+            }
+            return stdout ? process.stdout.getOutputStream() : process.stderr.getOutputStream();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    /**
+     * Turns exits from in-JVM process threads into a {@link SecurityException}
+     * and allows everything else.
+     */
+    @SuppressWarnings("removal")
+    private static class ExitTrappingSecurityManager extends SecurityManager {
+        private final SecurityManager delegate;
+
+        ExitTrappingSecurityManager(SecurityManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void checkExit(int status) {
+            InJvmProcess process = currentProcess();
+            if (process != null) {
+                process.exitRequested(status);
+                throw new SecurityException("In-JVM process " + process.processName + " exited with " + status);
+            }
+            if (delegate != null) {
+                delegate.checkExit(status);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {
+            if (delegate != null) {
+                delegate.checkPermission(perm);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            if (delegate != null) {
+                delegate.checkPermission(perm, context);
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * A cached copy of a freshly initialized accumulo instance.
+ * <p>
+ * Running accumulo's Initialize and SetGoalState each costs a JVM launch
+ * and a metadata bootstrap. A template captures the zookeeper data
+ * directory and the accumulo volume right after the goal state is set, so
+ * later clusters with the same settings can copy them instead.
+ * </p>
+ * <p>
+ * Templates are keyed by everything that affects initialization: the
+ * accumulo version, instance name, root password and the site
+ * configuration, minus the settings that are specific to a single cluster
+ * such as its volume and zookeeper address. Tablet files recorded in the
+ * template still point at the volume of the cluster that captured it, so a
+ * restored cluster maps that volume onto its own with
+ * {@code instance.volumes.replacements}.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class InstanceTemplate {
+    private static final Logger log = LoggerFactory.getLogger(InstanceTemplate.class);
+
+    private static final String VOLUMES = "instance.volumes";
+    private static final String VOLUME_REPLACEMENTS = "instance.volumes.replacements";
+    private static final Set<String> CLUSTER_SPECIFIC_PROPERTIES = new HashSet<>(Arrays.asList(
+            VOLUMES,
+            VOLUME_REPLACEMENTS,
+            "instance.zookeeper.host",
+            "general.classpaths",
+            "general.dynamic.classpaths",
+            // Depends on whether the native library could be built, and does not affect init.
+            "tserver.memory.maps.native.enabled",
+            // Sized from the memory budget, and does not affect init either.
+            "tserver.memory.maps.max"
+    ));
+    private static final String METADATA_FILE = "template.properties";
+    private static final String ZOOKEEPER_DIR = "zookeeper";
+    private static final String ZOOKEEPER_DATA_DIR = "version-2";
+    private static final String ACCUMULO_DIR = "accumulo-data";
+
+    private final MACConfig config;
+    private final File templateDirectory;
+
+    /**
+     * Create a template handle for the given configuration.
+     *
+     * @param cacheDirectory - directory holding all templates.
+     * @param config - configuration of the cluster using the template.
+     * @since 2.1.3-2
+     */
+    public InstanceTemplate(File cacheDirectory, MACConfig config) {
+        this.config = config;
+        this.templateDirectory = new File(cacheDirectory, computeKey(config));
+    }
+
+    /**
+     * Determine if a cluster can use templates at all. Templates require a
+     * zookeeper spawned by MAC, the default local volume, and a base
+     * directory that has not been initialized already.
+     *
+     * @param config - configuration of the cluster.
+     * @return true if templates can be used.
+     * @since 2.1.3-2
+     */
+    public static boolean isSupported(MACConfig config) {
+        if (config.useExistingZookeeper()) {
+            log.debug("Not using instance templates with an external zookeeper.");
+            return false;
+        }
+        String volume = config.getSiteConfig().get(VOLUMES);
+        if (volume == null || !volume.equals(config.getAccumuloDataDirectory().toURI().toString())) {
+            log.debug("Not using instance templates with custom volumes: {}", volume);
+            return false;
+        }
+        if (config.getAccumuloDataDirectory().exists()) {
+            log.debug("Not using instance templates, {} already exists.", config.getAccumuloDataDirectory());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the directory this template lives in.
+     *
+     * @return the directory this template lives in.
+     * @since 2.1.3-2
+     */
+    public File getDirectory() {
+        return templateDirectory;
+    }
+
+    /**
+     * Determine if this template has been captured already.
+     *
+     * @return true if the template can be restored.
+     * @since 2.1.3-2
+     */
+    public boolean exists() {
+        return new File(templateDirectory, METADATA_FILE).isFile();
+    }
+
+    /**
+     * Point the cluster's volume replacements at the template's volume.
+     * Must be called before the cluster writes accumulo.properties.
+     *
+     * @throws IOException if the template metadata cannot be read.
+     * @since 2.1.3-2
+     */
+    public void configureVolumeReplacement() throws IOException {
+        Properties metadata = new Properties();
+        try (Reader reader = Files.newBufferedReader(new File(templateDirectory, METADATA_FILE).toPath())) {
+            metadata.load(reader);
+        }
+        String templateVolume = trimTrailingSlash(metadata.getProperty(VOLUMES));
+        String clusterVolume = trimTrailingSlash(config.getSiteConfig().get(VOLUMES));
+        String replacement = templateVolume + " " + clusterVolume;
+        String existing = config.getSiteConfig().get(VOLUME_REPLACEMENTS);
+        if (existing != null && !existing.isEmpty()) {
+            replacement = existing + "," + replacement;
+        }
+        config.getSiteConfig().put(VOLUME_REPLACEMENTS, replacement);
+    }
+
+    /**
+     * Copy the template into the cluster's base directory. Zookeeper data
+     * is copied since zookeeper appends to its transaction logs. Accumulo
+     * files are never modified in place, so they are hard linked when the
+     * file system allows it.
+     *
+     * @throws IOException if the copy fails.
+     * @since 2.1.3-2
+     */
+    public void restore() throws IOException {
+        log.info("Restoring initialized instance from template {}", templateDirectory);
+        copyTree(
+                new File(new File(templateDirectory, ZOOKEEPER_DIR), ZOOKEEPER_DATA_DIR).toPath(),
+                new File(config.getZooKeeperDataDirectory(), ZOOKEEPER_DATA_DIR).toPath(),
+                false
+        );
+        copyTree(
+                new File(templateDirectory, ACCUMULO_DIR).toPath(),
+                config.getAccumuloDataDirectory().toPath(),
+                true
+        );
+    }
+
+    /**
+     * Save the cluster's freshly initialized state as this template. If
+     * another cluster captures the same template at the same time, the
+     * first one to finish wins.
+     *
+     * @throws IOException if the copy fails.
+     * @since 2.1.3-2
+     */
+    public void capture() throws IOException {
+        File parent = templateDirectory.getParentFile();
+        parent.mkdirs();
+        File staging = new File(parent, templateDirectory.getName() + "-" + UUID.randomUUID() + ".tmp");
+        log.info("Capturing initialized instance into template {}", templateDirectory);
+        try {
+            Path zookeeperCopy = new File(new File(staging, ZOOKEEPER_DIR), ZOOKEEPER_DATA_DIR).toPath();
+            copyTree(new File(config.getZooKeeperDataDirectory(), ZOOKEEPER_DATA_DIR).toPath(), zookeeperCopy, false);
+            trimPreallocatedLogs(zookeeperCopy);
+            copyTree(config.getAccumuloDataDirectory().toPath(), new File(staging, ACCUMULO_DIR).toPath(), false);
+
+            Properties metadata = new Properties();
+            metadata.setProperty(VOLUMES, config.getSiteConfig().get(VOLUMES));
+            metadata.setProperty("accumulo.version", Constants.VERSION);
+            try (Writer writer = Files.newBufferedWriter(new File(staging, METADATA_FILE).toPath())) {
+                metadata.store(writer, null);
+            }
+
+            try {
+                Files.move(staging.toPath(), templateDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (!exists()) {
+                    throw e;
+                }
+                log.debug("Template {} was captured concurrently, discarding this copy.", templateDirectory);
+            }
+        } finally {
+            deleteTree(staging.toPath());
+        }
+    }
+
+    private static String computeKey(MACConfig config) {
+        Map<String, String> inputs = new TreeMap<>();
+        for (Map.Entry<String, String> entry : config.getSiteConfig().entrySet()) {
+            if (!CLUSTER_SPECIFIC_PROPERTIES.contains(entry.getKey())) {
+                inputs.put("site." + entry.getKey(), entry.getValue());
+            }
+        }
+        inputs.put("accumulo.version", Constants.VERSION);
+        inputs.put("instance.name", config.getInstanceName());
+        inputs.put("root.password", config.getRootPassword());
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, String> entry : inputs.entrySet()) {
+                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder key = new StringBuilder("template-");
+            byte[] hash = digest.digest();
+            for (int i = 0; i < 16; i++) {
+                key.append(String.format("%02x", hash[i]));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String trimTrailingSlash(String uri) {
+        while (uri.endsWith("/")) {
+            uri = uri.substring(0, uri.length() - 1);
+        }
+        return uri;
+    }
+
+    private static void copyTree(Path source, Path target, boolean link) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            private boolean linksSupported = link;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path destination = target.resolve(source.relativize(file));
+                if (linksSupported) {
+                    try {
+                        Files.createLink(destination, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        log.debug("Could not hard link {}, falling back to copying: {}", file, e.getMessage());
+                        linksSupported = false;
+                    }
+                }
+                Files.copy(file, destination, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Zookeeper pads its transaction logs with zeros in large chunks. Every
+     * record ends with a non-zero marker byte, so the trailing zeros can be
+     * dropped to keep the template (and every copy of it) small.
+     */
+    private static void trimPreallocatedLogs(Path zookeeperData) throws IOException {
+        File[] logs = zookeeperData.toFile().listFiles((dir, name) -> name.startsWith("log."));
+        if (logs == null) {
+            return;
+        }
+        byte[] buffer = new byte[64 * 1024];
+        for (File logFile : logs) {
+            try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+                long end = file.length();
+                long lastNonZero = -1;
+                while (end > 0 && lastNonZero < 0) {
+                    int chunk = (int) Math.min(buffer.length, end);
+                    long start = end - chunk;
+                    file.seek(start);
+                    file.readFully(buffer, 0, chunk);
+                    for (int i = chunk - 1; i >= 0; i--) {
+                        if (buffer[i] != 0) {
+                            lastNonZero = start + i;
+                            break;
+                        }
+                    }
+                    end = start;
+                }
+                file.setLength(lastNonZero + 1);
+            }
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
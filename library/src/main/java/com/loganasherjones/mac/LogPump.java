@@ -0,0 +1,387 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Copies the output of every spawned process to its destination from a
+ * single thread.
+ * <p>
+ * The pump polls each registered stream for bytes that are already
+ * available and copies them in bulk, so it never blocks on a single
+ * process. When nothing is available it backs off, up to
+ * {@value #MAX_IDLE_SLEEP_MS}ms. Every destination is flushed on one
+ * shared schedule. Only whole lines are written, so output from processes
+ * sharing {@link System#out} does not get interleaved mid-line.
+ * </p>
+ * <p>
+ * Polling is a trade-off: one thread serves any number of processes, at
+ * the cost of up to {@value #MAX_IDLE_SLEEP_MS}ms of latency for the first
+ * line after a quiet period, and of relying on
+ * {@link InputStream#available()}. That works for process pipes on Linux
+ * and macOS and for in-JVM processes, but is not guaranteed everywhere. A
+ * stream that never reports bytes as available is still read to the end
+ * once its process dies. {@link Stream#awaitClosed(long, TimeUnit)} wakes
+ * the pump, so it does not pay the back-off. When log latency matters,
+ * {@link MACConfig.MACConfigBuilder#withFileLogging()} has the OS
+ * write the output to files directly, without the pump.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class LogPump {
+    private static final Logger log = LoggerFactory.getLogger(LogPump.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final long MAX_IDLE_SLEEP_MS = 50;
+    private static final LogPump shared = new LogPump();
+
+    private final List<Stream> streams = new CopyOnWriteArrayList<>();
+    private final List<FileWatch> watches = new CopyOnWriteArrayList<>();
+    private Thread thread;
+    // Guarded by this.
+    private boolean wakeRequested = false;
+
+    /**
+     * Returns the pump shared by every cluster in this JVM.
+     *
+     * @return the pump shared by every cluster in this JVM.
+     * @since 2.1.3-2
+     */
+    public static LogPump getShared() {
+        return shared;
+    }
+
+    /**
+     * Start copying a process's stream to a destination.
+     *
+     * @param name - name of the stream, used in logs.
+     * @param in - the stream to read, typically a process's stdout or stderr.
+     * @param out - where to copy it. Closed once the stream ends, unless it
+     *            is {@link System#out} or {@link System#err}.
+     * @param sourceAlive - returns false once nothing more will be written
+     *                    to the stream, typically {@link Process#isAlive()}.
+     * @return the registered stream.
+     * @since 2.1.3-2
+     */
+    public Stream register(String name, InputStream in, OutputStream out, BooleanSupplier sourceAlive) {
+        return register(name, in, out, sourceAlive, null);
+    }
+
+    /**
+     * Start copying a process's stream to a destination, keeping the most
+     * recent output in a tail as well.
+     *
+     * @param name - name of the stream, used in logs.
+     * @param in - the stream to read, typically a process's stdout or stderr.
+     * @param out - where to copy it. Closed once the stream ends, unless it
+     *            is {@link System#out} or {@link System#err}.
+     * @param sourceAlive - returns false once nothing more will be written
+     *                    to the stream, typically {@link Process#isAlive()}.
+     * @param tail - also receives everything written to {@code out}, may be null.
+     * @return the registered stream.
+     * @since 2.1.3-2
+     */
+    public Stream register(String name, InputStream in, OutputStream out, BooleanSupplier sourceAlive, OutputTail tail) {
+        Stream stream = new Stream(name, in, out, sourceAlive, tail);
+        synchronized (this) {
+            streams.add(stream);
+            ensureRunning();
+        }
+        return stream;
+    }
+
+    /**
+     * Watch log files the OS writes a process's output to, to find out when
+     * the process first writes anything. Nothing is copied.
+     *
+     * @param files - the log files of the process.
+     * @param sourceAlive - returns false once nothing more will be written
+     *                    to the files, typically {@link Process#isAlive()}.
+     * @return the registered watch.
+     * @since 2.1.3-2
+     */
+    public FileWatch watch(List<File> files, BooleanSupplier sourceAlive) {
+        FileWatch watch = new FileWatch(files, sourceAlive);
+        synchronized (this) {
+            watches.add(watch);
+            ensureRunning();
+        }
+        return watch;
+    }
+
+    /**
+     * Has the pump poll again right away, instead of after its back-off.
+     */
+    private synchronized void wakeUp() {
+        wakeRequested = true;
+        notifyAll();
+    }
+
+    private void ensureRunning() {
+        if (thread == null) {
+            thread = new Thread(this::run, "mac-log-pump");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    private void run() {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+        long sleepMs = 1;
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (streams.isEmpty() && watches.isEmpty()) {
+                        wait();
+                    }
+                }
+
+                for (FileWatch watch : watches) {
+                    watch.check();
+                }
+
+                boolean copied = false;
+                for (Stream stream : streams) {
+                    copied |= stream.pump(buffer);
+                }
+
+                if (System.nanoTime() - nextFlush >= 0) {
+                    for (Stream stream : streams) {
+                        stream.flushQuietly();
+                    }
+                    nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+                }
+
+                if (copied) {
+                    sleepMs = 1;
+                } else {
+                    synchronized (this) {
+                        if (!wakeRequested) {
+                            wait(sleepMs);
+                        }
+                        sleepMs = wakeRequested ? 1 : Math.min(sleepMs * 2, MAX_IDLE_SLEEP_MS);
+                        wakeRequested = false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.debug("Log pump interrupted, ignoring.");
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in log pump", e);
+            }
+        }
+    }
+
+    /**
+     * Log files being watched for the first output of a process.
+     *
+     * @since 2.1.3-2
+     */
+    public class FileWatch {
+        private final List<File> files;
+        private final BooleanSupplier sourceAlive;
+        private volatile long firstOutputNanos = -1;
+
+        private FileWatch(List<File> files, BooleanSupplier sourceAlive) {
+            this.files = files;
+            this.sourceAlive = sourceAlive;
+        }
+
+        private void check() {
+            boolean alive = sourceAlive.getAsBoolean();
+            for (File file : files) {
+                if (file.length() > 0) {
+                    firstOutputNanos = System.nanoTime();
+                    watches.remove(this);
+                    return;
+                }
+            }
+            if (!alive) {
+                watches.remove(this);
+            }
+        }
+
+        /**
+         * Returns the {@link System#nanoTime()} at which output was first
+         * seen in any of the files, or -1 if there has been none.
+         *
+         * @return when output was first seen, or -1.
+         * @since 2.1.3-2
+         */
+        public long getFirstOutputNanos() {
+            return firstOutputNanos;
+        }
+    }
+
+    /**
+     * A single stream being copied by the pump.
+     *
+     * @since 2.1.3-2
+     */
+    public class Stream {
+        private final String name;
+        private final InputStream in;
+        private final OutputStream out;
+        private final BooleanSupplier sourceAlive;
+        private final OutputTail tail;
+        private final boolean safeToClose;
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        private boolean closed = false;
+
+        private Stream(String name, InputStream in, OutputStream out, BooleanSupplier sourceAlive, OutputTail tail) {
+            this.name = name;
+            this.in = in;
+            this.out = out;
+            this.sourceAlive = sourceAlive;
+            this.tail = tail;
+            this.safeToClose = out != System.out && out != System.err;
+        }
+
+        /**
+         * Copy whatever is available without blocking.
+         *
+         * @return true if any bytes were copied.
+         */
+        private synchronized boolean pump(byte[] buffer) {
+            if (closed) {
+                return false;
+            }
+            try {
+                // Checked before reading: once the source is dead, everything
+                // it wrote is already available.
+                boolean alive = sourceAlive.getAsBoolean();
+                int available = in.available();
+                if (available > 0) {
+                    int read = in.read(buffer, 0, Math.min(available, buffer.length));
+                    if (read < 0) {
+                        close();
+                        return false;
+                    }
+                    write(buffer, read);
+                    return true;
+                }
+                if (!alive) {
+                    close();
+                }
+            } catch (IOException e) {
+                log.debug("Could not copy output of {}", name, e);
+                close();
+            }
+            return false;
+        }
+
+        private void write(byte[] buffer, int length) throws IOException {
+            int lastNewline = length - 1;
+            while (lastNewline >= 0 && buffer[lastNewline] != '\n') {
+                lastNewline--;
+            }
+            if (lastNewline < 0) {
+                partialLine.write(buffer, 0, length);
+                if (partialLine.size() >= BUFFER_SIZE) {
+                    // Give up on keeping a very long line whole.
+                    emitPartialLine();
+                }
+                return;
+            }
+            emitPartialLine();
+            out.write(buffer, 0, lastNewline + 1);
+            if (tail != null) {
+                tail.write(buffer, 0, lastNewline + 1);
+            }
+            partialLine.write(buffer, lastNewline + 1, length - lastNewline - 1);
+        }
+
+        private void emitPartialLine() throws IOException {
+            if (partialLine.size() == 0) {
+                return;
+            }
+            partialLine.writeTo(out);
+            if (tail != null) {
+                partialLine.writeTo(tail);
+            }
+            partialLine.reset();
+        }
+
+        /**
+         * Forces a flush of any buffered output to the destination.
+         *
+         * @throws IOException if something goes wrong with the flush.
+         * @since 2.1.3-2
+         */
+        public synchronized void flush() throws IOException {
+            if (!closed) {
+                out.flush();
+            }
+        }
+
+        /**
+         * Waits until the stream has ended and everything read from it was
+         * written to its destination, which happens shortly after the
+         * source dies.
+         *
+         * @param timeout - the maximum time to wait.
+         * @param unit - the unit of the timeout.
+         * @return true if the stream was drained and closed.
+         * @throws InterruptedException if interrupted while waiting.
+         * @since 2.1.3-2
+         */
+        public synchronized boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (!closed) {
+                wakeUp();
+            }
+            while (!closed) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return false;
+                }
+                wait(remainingMs);
+            }
+            return true;
+        }
+
+        private void flushQuietly() {
+            try {
+                flush();
+            } catch (IOException e) {
+                log.debug("Could not flush output of {}", name, e);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            streams.remove(this);
+            try {
+                if (partialLine.size() > 0) {
+                    partialLine.write('\n');
+                    emitPartialLine();
+                }
+                out.flush();
+                if (safeToClose) {
+                    out.close();
+                }
+                in.close();
+            } catch (IOException e) {
+                log.debug("Could not close output of {}", name, e);
+            } finally {
+                notifyAll();
+            }
+        }
+    }
+}
@@ -22,7 +22,9 @@ import java.util.TimerTask;
  *
  * @author loganasherjones
  * @since 1.10.4
+ * @deprecated MAC no longer uses this. Output is copied by {@link LogPump}.
  */
+@Deprecated(since = "2.1.3-2")
 public class LogWriter extends Thread {
 
     private static final Logger log = LoggerFactory.getLogger(LogWriter.class);
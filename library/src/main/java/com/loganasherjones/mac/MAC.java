@@ -1,5 +1,6 @@
 package com.loganasherjones.mac;
 
+import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.Accumulo;
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.AccumuloException;
@@ -17,17 +18,31 @@ import org.apache.accumulo.manager.state.SetGoalState;
 import org.apache.accumulo.server.init.Initialize;
 import org.apache.accumulo.shell.Shell;
 import org.apache.accumulo.tserver.TabletServer;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.server.ZooKeeperServerMain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.Socket;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 /**
  * A Mini Accumulo Cluster suitable for integration tests.
@@ -61,12 +76,23 @@ import java.util.Map;
 public class MAC {
 
     private static final Logger log = LoggerFactory.getLogger(MAC.class);
+    private static final int ZOOKEEPER_PROBE_SOCKET_TIMEOUT_MS = 1000;
+    private static final long ZOOKEEPER_PROBE_MAX_BACKOFF_MICROS = 100_000;
+    private static final long RESET_TIMEOUT_MS = 60_000;
+    private static final int FAILURE_TAIL_LINES = 50;
+    private static final long OUTPUT_DRAIN_TIMEOUT_MS = 5_000;
 
     private final MACConfig config;
     private final MACProcessSpawner spawner;
     private boolean initialized = false;
     private boolean stopped = false;
-    private final List<MACProcess> macProcesses = new ArrayList<>();
+    private final List<MACProcess> macProcesses = Collections.synchronizedList(new ArrayList<>());
+    private volatile MACProcess zookeeperProcess;
+    private volatile EmbeddedZooKeeper embeddedZooKeeper;
+    private volatile ClusterReset clusterReset;
+    private volatile StartupReport startupReport;
+    private volatile ResourceSampler resourceSampler;
+    private Thread shutdownHook;
 
     /**
      * Create a new Mini Accumulo Cluster with the default configuration.
@@ -84,7 +110,7 @@ public class MAC {
      */
     public MAC(MACConfig config) {
         this.config = config;
-        this.spawner = new MACProcessSpawner(config.getClasspathLoader(), config.shouldLogToFile(), config.getLogDir());
+        this.spawner = new MACProcessSpawner(config);
     }
 
     /**
@@ -179,6 +205,11 @@ public class MAC {
 
     /**
      * Spawn a mini-accumulo cluster.
+     * <p>
+     * Unless {@link MACConfig.MACConfigBuilder#withStartupReadinessTimeoutMS(int)}
+     * is set to zero, this only returns once the tablet servers and manager
+     * are serving and the metadata tablets are hosted.
+     * </p>
      * @throws Exception if something goes wrong.
      * @since 1.10.4
      */
@@ -191,18 +222,48 @@ public class MAC {
         synchronized (this) {
             if (!initialized) {
                 log.info("Starting Mini Accumulo Cluster");
+                StartupReport report = new StartupReport();
+                startupReport = report;
+                if (config.getNativeMapsDir() != null) {
+                    report.phaseStarted("native-maps");
+                    File library = new NativeMaps(config.getNativeMapsDir()).resolve();
+                    if (library != null) {
+                        config.enableNativeMaps(library);
+                    } else {
+                        long unused = config.disableNativeMaps();
+                        if (unused > 0) {
+                            log.info("Gave the {} MB kept for native maps back to the tablet server heaps: {}",
+                                    unused / (1024 * 1024), config.getMemoryBudget());
+                        }
+                    }
+                    report.phaseFinished("native-maps");
+                }
+                report.phaseStarted("directories");
+                InstanceTemplate template = getInstanceTemplate();
+                boolean restored = template != null && template.exists();
+                if (restored) {
+                    template.configureVolumeReplacement();
+                }
                 config.createDirectoryStructure();
+                if (restored) {
+                    template.restore();
+                }
+                report.phaseFinished("directories");
                 if (config.shouldLogToFile()) {
                     log.info("You can find logs at: {}", config.getLogDir());
                 }
 
                 ensureStopIsCalled();
-                ensureZookeeperIsRunning();
-                initializeAccumulo();
-                startTabletServers();
-                setManagerGoalState();
-                startManager();
-                startGarbageCollector();
+                startResourceSampler();
+                buildStartupPipeline(template, restored, report).run();
+                report.phaseStarted("reset-baseline");
+                clusterReset = ClusterReset.capture(this, config, config.getZooKeeperStartupTimeout());
+                report.phaseFinished("reset-baseline");
+                report.finished();
+                log.info("{}", report);
+                if (config.getRamDiskDir() != null) {
+                    log.info("RAM disk {} holds {} MB", config.getRamDiskDir(), getRamDiskUsage() / (1024 * 1024));
+                }
 
                 initialized = true;
             }
@@ -212,8 +273,17 @@ public class MAC {
 
     /**
      * Stops the mini-accumulo-cluster.
+     * <p>
+     * The gc and manager are stopped first, then every tablet server, then
+     * zookeeper. Processes in each stage are stopped concurrently and are
+     * killed if they do not exit within
+     * {@link MACConfig.MACConfigBuilder#withShutdownTimeoutMS(int)}.
+     * In-JVM processes cannot be killed, so the manager is always asked to
+     * shut the servers down cleanly first.
+     * </p>
      *
      * @throws IOException - if something goes wrong.
+     * @throws IllegalStateException - if in-JVM processes are still running.
      * @throws InterruptedException - if interrupted while stopping.
      * @since 1.10.4
      */
@@ -223,16 +293,260 @@ public class MAC {
             return;
         }
 
+        List<String> stillRunning = new ArrayList<>();
         synchronized (this) {
             if (!stopped) {
                 log.info("Stopping Mini Accumulo Cluster");
-                for (MACProcess process : macProcesses) {
-                    process.stop();
+                List<MACProcess> processes = new ArrayList<>(macProcesses);
+                MACProcess manager = findProcess(processes, "-manager");
+                // In-JVM servers cannot be killed, so they have to stop themselves.
+                boolean clean = config.shouldShutdownGracefully() || config.shouldRunInJvm();
+                if (clean && manager != null && manager.isAlive()) {
+                    requestCleanShutdown(manager);
+                }
+
+                // Reverse dependency order: the gc and manager go first so the
+                // manager does not reassign tablets while tablet servers die.
+                // Zookeeper goes last since everything else depends on it.
+                List<MACProcess> servers = new ArrayList<>();
+                List<MACProcess> tservers = new ArrayList<>();
+                for (MACProcess process : processes) {
+                    if (process == zookeeperProcess) {
+                        continue;
+                    }
+                    if (process.getProcessName().contains("-tserver-")) {
+                        tservers.add(process);
+                    } else {
+                        servers.add(process);
+                    }
+                }
+                stopConcurrently(servers);
+                stopConcurrently(tservers);
+                if (zookeeperProcess != null) {
+                    stopConcurrently(Collections.singletonList(zookeeperProcess));
+                }
+                if (embeddedZooKeeper != null) {
+                    embeddedZooKeeper.stop();
+                }
+                deleteRamDisk();
+                stopResourceSampler();
+                removeShutdownHook();
+                for (MACProcess process : processes) {
+                    if (process.isAlive()) {
+                        stillRunning.add(process.getProcessName());
+                    }
+                }
+                if (stillRunning.isEmpty()) {
+                    log.info("Mini Accumulo Cluster stopped.");
                 }
-                log.info("Mini Accumulo Cluster stopped.");
             }
             stopped = true;
         }
+        if (!stillRunning.isEmpty()) {
+            throw new IllegalStateException("Could not stop " + stillRunning
+                    + ". Their threads are still running in this JVM.");
+        }
+    }
+
+    /**
+     * Return a running cluster to the state it was in when {@link #start()}
+     * returned, without restarting any processes.
+     * <p>
+     * Tables, namespaces and local users created since then are removed,
+     * along with system properties and default namespace properties
+     * (including iterator settings) set through the API. Deletes are issued
+     * concurrently, and this only returns once zookeeper shows the initial
+     * tables, namespaces and users.
+     * </p>
+     *
+     * @throws IllegalStateException if the cluster is not running.
+     * @throws Exception if something goes wrong.
+     * @since 2.1.3-2
+     */
+    public void reset() throws Exception {
+        if (!initialized || stopped) {
+            throw new IllegalStateException("reset called on a MAC that is not running.");
+        }
+        clusterReset.reset(RESET_TIMEOUT_MS);
+    }
+
+    private static MACProcess findProcess(List<MACProcess> processes, String suffix) {
+        for (MACProcess process : processes) {
+            if (process.getProcessName().endsWith(suffix)) {
+                return process;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the manager goal state to CLEAN_STOP, which makes the manager
+     * unload every tablet, stop the tablet servers and then exit.
+     */
+    private void requestCleanShutdown(MACProcess manager) throws InterruptedException {
+        log.info("Asking the manager to shut down cleanly.");
+        try (ZooKeeperConnection zk = ZooKeeperConnection.connect(getZooKeepers(), 30000, config.getShutdownTimeout())) {
+            String instanceId = zk.getInstanceId(config.getInstanceName(), null);
+            if (instanceId == null) {
+                return;
+            }
+            String secret = config.getSiteConfig().get("instance.secret");
+            zk.getZooKeeper().addAuthInfo("digest", ("accumulo:" + secret).getBytes(StandardCharsets.UTF_8));
+            zk.getZooKeeper().setData(
+                    ZooKeeperConnection.instancePath(instanceId) + Constants.ZMANAGER_GOAL_STATE,
+                    ManagerGoalState.CLEAN_STOP.name().getBytes(StandardCharsets.UTF_8),
+                    -1
+            );
+        } catch (IOException | KeeperException e) {
+            log.warn("Could not ask the manager to shut down cleanly. Stopping processes instead.", e);
+            return;
+        }
+
+        if (!manager.waitFor(config.getShutdownTimeout(), TimeUnit.MILLISECONDS)) {
+            log.warn("Manager did not shut down cleanly within {}ms. Stopping processes instead.",
+                    config.getShutdownTimeout());
+        }
+    }
+
+    /**
+     * Stop every process at the same time, waiting at most the shutdown
+     * timeout for each before killing it.
+     */
+    private void stopConcurrently(List<MACProcess> processes) throws IOException, InterruptedException {
+        if (processes.isEmpty()) {
+            return;
+        }
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (MACProcess process : processes) {
+            tasks.add(() -> process.stop(config.getShutdownTimeout()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(processes.size(), r -> {
+            Thread t = new Thread(r, "mac-" + config.getMACId() + "-stop");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException("Error stopping process", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the timings of the last call to {@link #start()}: how long
+     * each startup phase took, and when each process was spawned and
+     * first wrote output.
+     *
+     * @return the startup timings, or null if the cluster was never started.
+     * @since 2.1.3-2
+     */
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
+
+    /**
+     * Returns the accumulo server metrics of this cluster, when enabled with
+     * {@link MACConfig.MACConfigBuilder#withMetrics()}.
+     *
+     * @return the metrics of every tablet server, the manager and the gc.
+     * @throws IllegalStateException if metrics are not enabled.
+     * @since 2.1.3-2
+     */
+    public MACMetrics getMetrics() {
+        if (config.getMetricsDir() == null) {
+            throw new IllegalStateException("Metrics are not enabled. Use MACConfigBuilder.withMetrics().");
+        }
+        return new MACMetrics(config.getMetricsDir());
+    }
+
+    /**
+     * Returns the resource usage samples of a process, when enabled with
+     * {@link MACConfig.MACConfigBuilder#withResourceSampling(int)}.
+     *
+     * @param name - the name of the process, as for {@link #getProcess(String)}.
+     * @return the samples, or null if the process is not sampled.
+     * @throws IllegalArgumentException if no process has that name.
+     * @since 2.1.3-2
+     */
+    public ResourceSamples getResourceSamples(String name) {
+        MACProcess process = getProcess(name);
+        ResourceSampler sampler = resourceSampler;
+        if (sampler == null) {
+            return null;
+        }
+        return sampler.getSamples(process.getProcessName());
+    }
+
+    /**
+     * Returns a process spawned for this cluster, such as {@code "tserver-0"},
+     * {@code "manager"}, {@code "gc"}, {@code "zookeeper"} or
+     * {@code "accumulo-init"}. The full process name, including the MAC ID,
+     * works as well.
+     *
+     * @param name - the name of the process.
+     * @return the process.
+     * @throws IllegalArgumentException if no process has that name.
+     * @since 2.1.3-2
+     */
+    public MACProcess getProcess(String name) {
+        List<String> names = new ArrayList<>();
+        for (MACProcess process : new ArrayList<>(macProcesses)) {
+            String processName = process.getProcessName();
+            if (processName.equals(name) || processName.equals("mac-" + config.getMACId() + "-" + name)) {
+                return process;
+            }
+            names.add(processName);
+        }
+        throw new IllegalArgumentException("No process named " + name + ". Known processes: " + names);
+    }
+
+    /**
+     * Waits until no compaction is running on a tablet server, queued on
+     * one, or waiting in a FATE operation, such as a user compaction the
+     * manager has not handed out yet. The cluster has to report none on two
+     * polls in a row, so a compaction queued while another finishes is not
+     * missed. {@link MACConfig.MACConfigBuilder#withFastTimers()} makes
+     * tablet servers start compactions sooner.
+     *
+     * @param timeout - the maximum time to wait.
+     * @param unit - the unit of the timeout.
+     * @throws TimeoutException if compactions are still pending after the timeout.
+     * @throws AccumuloException if the servers cannot be asked.
+     * @throws AccumuloSecurityException if the root user cannot list compactions.
+     * @throws InterruptedException if interrupted while waiting.
+     * @since 2.1.3-2
+     */
+    public void awaitCompactionsDrained(long timeout, TimeUnit unit)
+            throws TimeoutException, AccumuloException, AccumuloSecurityException, InterruptedException {
+        new BackgroundWork(this, config).awaitCompactionsDrained(unit.toMillis(timeout));
+    }
+
+    /**
+     * Waits until the garbage collector finishes a collection cycle that
+     * started after this call, so files that were waiting to be deleted
+     * before the call and are no longer used are gone. The cycle is read
+     * from the status the gc reports, not from its output.
+     * {@link MACConfig.MACConfigBuilder#withFastTimers()} makes the gc run
+     * every second.
+     *
+     * @param timeout - the maximum time to wait.
+     * @param unit - the unit of the timeout.
+     * @throws TimeoutException if no cycle finished within the timeout.
+     * @throws IllegalStateException if the gc is not running.
+     * @throws InterruptedException if interrupted while waiting.
+     * @since 2.1.3-2
+     */
+    public void awaitGcCycle(long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+        new BackgroundWork(this, config).awaitGcCycle(unit.toMillis(timeout));
     }
 
     /**
@@ -250,11 +564,184 @@ public class MAC {
         shell.shutdown();
     }
 
+    /**
+     * Describes the startup phases and what each one needs to have
+     * finished first. Tablet servers and the garbage collector only need
+     * an initialized instance, and the manager only needs its goal state,
+     * so all of them can spawn at the same time.
+     * <p>
+     * When restoring from a template, init and goal state are already done.
+     * When capturing a template, the servers wait for the capture so they
+     * cannot modify the instance while it is being copied.
+     * </p>
+     */
+    private StartupPipeline buildStartupPipeline(InstanceTemplate template, boolean restored, StartupReport report) {
+        StartupPipeline pipeline = new StartupPipeline("mac-" + config.getMACId(), report);
+        List<String> serverSteps = new ArrayList<>();
+        pipeline.addStep("zookeeper", this::ensureZookeeperIsRunning);
+        String initialized;
+        String goalState;
+        if (restored) {
+            initialized = "zookeeper";
+            goalState = "zookeeper";
+        } else {
+            pipeline.addStep("init", this::initializeAccumulo, "zookeeper");
+            pipeline.addStep("goal-state", this::setManagerGoalState, "init");
+            initialized = "init";
+            goalState = "goal-state";
+            if (template != null) {
+                pipeline.addStep("template-capture", template::capture, "goal-state");
+                initialized = "template-capture";
+                goalState = "template-capture";
+            }
+        }
+        for (int i = 0; i < config.getNumTservers(); i++) {
+            int num = i;
+            pipeline.addStep("tserver-" + num, () -> startTabletServer(num), initialized);
+            serverSteps.add("tserver-" + num);
+        }
+        pipeline.addStep("manager", this::startManager, goalState);
+        serverSteps.add("manager");
+        pipeline.addStep("gc", this::startGarbageCollector, initialized);
+        if (config.getStartupReadinessTimeout() > 0) {
+            pipeline.addStep("ready", this::waitForClusterToBeReady, serverSteps.toArray(new String[0]));
+        }
+        return pipeline;
+    }
+
+    private void track(MACProcess process) {
+        macProcesses.add(process);
+        StartupReport report = startupReport;
+        if (report != null) {
+            report.processSpawned(process);
+        }
+        ResourceSampler sampler = resourceSampler;
+        if (sampler != null) {
+            sampler.register(process);
+        }
+    }
+
+    private void startResourceSampler() {
+        if (config.getResourceSamplingInterval() <= 0) {
+            return;
+        }
+        if (!ResourceSampler.isSupported()) {
+            log.warn("Resource sampling needs /proc, which is not available. Not sampling.");
+            return;
+        }
+        resourceSampler = new ResourceSampler("mac-" + config.getMACId(), config.getResourceSamplingInterval());
+    }
+
+    /**
+     * Returns how many bytes the cluster stores on its RAM disk, when enabled
+     * with {@link MACConfig.MACConfigBuilder#withRamDisk()}. This memory is
+     * used on top of the memory of the processes themselves.
+     *
+     * @return the bytes stored on the RAM disk, or 0 if there is no RAM disk.
+     * @since 2.1.3-2
+     */
+    public long getRamDiskUsage() {
+        File ramDisk = config.getRamDiskDir();
+        if (ramDisk == null || !ramDisk.exists()) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(ramDisk.toPath())) {
+            return paths.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+        } catch (IOException | UncheckedIOException e) {
+            // Files come and go while the cluster runs.
+            log.debug("Could not measure RAM disk {}", ramDisk, e);
+            return 0;
+        }
+    }
+
+    private void deleteRamDisk() {
+        File ramDisk = config.getRamDiskDir();
+        if (ramDisk == null || !ramDisk.exists()) {
+            return;
+        }
+        log.info("Deleting RAM disk {}, which held {} MB", ramDisk, getRamDiskUsage() / (1024 * 1024));
+        try (Stream<Path> paths = Files.walk(ramDisk.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not delete RAM disk {}", ramDisk, e);
+        }
+    }
+
+    private void stopResourceSampler() {
+        ResourceSampler sampler = resourceSampler;
+        if (sampler == null) {
+            return;
+        }
+        sampler.close();
+        File samplesFile = new File(config.getLogDir(), "resource-samples.csv");
+        try {
+            sampler.writeCsv(samplesFile);
+            log.info("Resource samples written to {}", samplesFile);
+        } catch (IOException e) {
+            log.warn("Could not write resource samples to {}", samplesFile, e);
+        }
+    }
+
+    private String describeProcess(MACProcess process) {
+        if (!process.isAlive()) {
+            // The last lines usually hold the stack trace, and may still be in the pipe.
+            try {
+                if (!process.awaitOutputDrained(OUTPUT_DRAIN_TIMEOUT_MS)) {
+                    log.debug("Output of {} was not drained within {}ms", process.getProcessName(), OUTPUT_DRAIN_TIMEOUT_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return "\n--- Last output of " + process.getProcessName() + " ---\n" + process.tail(FAILURE_TAIL_LINES);
+    }
+
+    /**
+     * Describes every spawned process that has already exited, which is
+     * usually why a cluster does not become ready.
+     */
+    private String describeExitedProcesses() {
+        StringBuilder result = new StringBuilder();
+        for (MACProcess process : new ArrayList<>(macProcesses)) {
+            if (!process.isAlive() && process.exitValue() != 0) {
+                result.append(describeProcess(process));
+            }
+        }
+        return result.toString();
+    }
+
+    private InstanceTemplate getInstanceTemplate() {
+        if (config.getTemplateCacheDirectory() == null || !InstanceTemplate.isSupported(config)) {
+            return null;
+        }
+        return new InstanceTemplate(config.getTemplateCacheDirectory(), config);
+    }
+
+    private void waitForClusterToBeReady() throws Exception {
+        try {
+            new ClusterReadiness(this, config, startupReport).await(config.getStartupReadinessTimeout());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Mini Accumulo Cluster was not ready within "
+                    + (config.getStartupReadinessTimeout() / 1000) + " seconds. Check the logs in "
+                    + config.getLogDir() + " for errors. " + e.getMessage() + describeExitedProcesses(), e);
+        }
+    }
+
     private void ensureZookeeperIsRunning() throws IOException, InterruptedException {
-        if (!config.useExistingZookeeper()) {
+        if (config.useExistingZookeeper()) {
+            waitForZookeeperToBeOk();
+        } else if (config.shouldEmbedZooKeeper()) {
+            startEmbeddedZookeeper();
+        } else {
             startZookeeperProcess();
+            waitForZookeeperToBeOk();
         }
-        waitForZookeeperToBeOk();
+    }
+
+    private void startEmbeddedZookeeper() throws IOException, InterruptedException {
+        EmbeddedZooKeeper zk = EmbeddedZooKeeper.fromConfig(config);
+        zk.start();
+        embeddedZooKeeper = zk;
     }
 
     private void startGarbageCollector() throws IOException {
@@ -265,7 +752,7 @@ public class MAC {
                 getAccumuloAddressArgs(),
                 config.getAccumuloGCJvmProperties()
         );
-        macProcesses.add(process);
+        track(process);
     }
 
 
@@ -277,7 +764,7 @@ public class MAC {
                 getAccumuloAddressArgs(),
                 config.getAccumuloManagerJvmProperties()
         );
-        macProcesses.add(process);
+        track(process);
     }
 
     private void setManagerGoalState() throws IOException, InterruptedException {
@@ -288,20 +775,15 @@ public class MAC {
                 Collections.singletonList(ManagerGoalState.NORMAL.toString()),
                 config.getAccumuloInitJvmProperties()
         );
+        track(process);
         int retCode = process.waitFor();
         if (retCode != 0) {
             log.error("Error setting manager goal state.");
-            throw new RuntimeException("Error setting manager goal state.");
+            throw new RuntimeException("Error setting manager goal state." + describeProcess(process));
         }
 
     }
 
-    private void startTabletServers() throws IOException {
-        for (int i = 0; i < config.getNumTservers(); i++) {
-            startTabletServer(i);
-        }
-    }
-
     private void startTabletServer(int num) throws IOException {
         String processName = "mac-" + config.getMACId() + "-tserver-" + num;
         Map<String, String> env = new HashMap<>();
@@ -313,7 +795,7 @@ public class MAC {
                 config.getAccumuloTserverJvmProperties(),
                 env
         );
-        macProcesses.add(process);
+        track(process);
     }
 
     private void startZookeeperProcess() throws IOException {
@@ -324,7 +806,8 @@ public class MAC {
         additionalArgs.add(config.getZooCfgFile().getAbsolutePath());
 
         MACProcess process = spawner.spawnProcess(processName, className, additionalArgs, config.getZooKeeperJvmProperties());
-        macProcesses.add(process);
+        track(process);
+        zookeeperProcess = process;
     }
 
 
@@ -344,15 +827,16 @@ public class MAC {
                 additionalArgs,
                 config.getAccumuloInitJvmProperties()
         );
+        track(process);
         int retCode = process.waitFor();
         if (retCode != 0) {
             log.error("Error initializing accumulo.");
-            throw new RuntimeException("Error initializing accumulo.");
+            throw new RuntimeException("Error initializing accumulo." + describeProcess(process));
         }
     }
 
     private void ensureStopIsCalled() {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        shutdownHook = new Thread(() -> {
             try {
                 log.info("MAC shutdown hook called. Attempting to stop...");
                 MAC.this.stop();
@@ -362,36 +846,64 @@ public class MAC {
             } catch (InterruptedException e) {
                 log.error("InterruptedException while trying to stop MAC.", e);
             }
-        }));
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Stopped clusters no longer need their hook. Removing it keeps
+     * processes that start many clusters from piling up hooks.
+     */
+    private void removeShutdownHook() {
+        if (shutdownHook == null) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down, possibly from this hook.
+        }
+        shutdownHook = null;
     }
 
     private void waitForZookeeperToBeOk() throws InterruptedException {
         log.info("Waiting for zookeeper to report ok.");
 
-        long startTime = System.currentTimeMillis();
+        ZooKeeperProbe probe = new ZooKeeperProbe(
+                config.getZooKeeperHost(),
+                config.getZooKeeperPort(),
+                ZOOKEEPER_PROBE_SOCKET_TIMEOUT_MS
+        );
+        startupReport.phaseStarted("zookeeper-ruok");
+        long startTime = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getZooKeeperStartupTimeout());
+        long backoffMicros = 500;
+        ZooKeeperProbe.Status status;
         while (true) {
-            try (Socket s = new Socket(config.getZooKeeperHost(), config.getZooKeeperPort())) {
-                log.debug("Checking if zookeeper is ok");
-                s.setReuseAddress(true);
-                s.getOutputStream().write("ruok\n".getBytes());
-                s.getOutputStream().flush();
-                byte[] buffer = new byte[100];
-                int n = s.getInputStream().read(buffer);
-                if (n >= 4 && new String(buffer, 0, 4).equals("imok")) {
-                    log.info("Zookeeper reported ok.");
-                    return;
-                }
-            } catch (Exception e) {
-                log.debug("Zookeeper is not ok.");
-                log.trace("Error message was: ", e);
-                if (System.currentTimeMillis() - startTime >= config.getZooKeeperStartupTimeout()) {
-                    throw new RuntimeException("Zookeeper did not start within "
-                            + (config.getZooKeeperStartupTimeout() / 1000) + " seconds. Check the logs in "
-                            + config.getLogDir() + " for errors.  Last exception: " + e);
-                }
-                // Don't spin absurdly fast
-                Thread.sleep(250);
+            if (zookeeperProcess != null && !zookeeperProcess.isAlive()) {
+                throw new RuntimeException("Zookeeper process exited with code "
+                        + zookeeperProcess.exitValue() + " before reporting ok. Check the logs in "
+                        + config.getLogDir() + " for errors." + describeProcess(zookeeperProcess));
             }
+
+            status = probe.probe();
+            if (status == ZooKeeperProbe.Status.OK) {
+                log.info("Zookeeper reported ok after {}ms.",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                startupReport.phaseFinished("zookeeper-ruok");
+                return;
+            }
+            log.debug("Zookeeper is not ok ({}).", status);
+
+            if (System.nanoTime() - startTime >= timeoutNanos) {
+                throw new RuntimeException("Zookeeper did not start within "
+                        + (config.getZooKeeperStartupTimeout() / 1000) + " seconds. Check the logs in "
+                        + config.getLogDir() + " for errors.  Last status: " + status);
+            }
+
+            // Start fast since zookeeper usually binds quickly, then back off.
+            TimeUnit.MICROSECONDS.sleep(backoffMicros);
+            backoffMicros = Math.min(backoffMicros * 2, ZOOKEEPER_PROBE_MAX_BACKOFF_MICROS);
         }
     }
 
@@ -1,5 +1,6 @@
 package com.loganasherjones.mac;
 
+import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.server.util.PortUtils;
 
@@ -11,6 +12,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuration for the {@link MAC}. To construct this object use
@@ -27,6 +29,8 @@ public class MACConfig {
     private final ClasspathLoader classpathLoader;
     private final boolean logToFile;
     private final int zooKeeperStartupTimeout;
+    private final int startupReadinessTimeout;
+    private final int shutdownTimeout;
     private final File baseDirectory;
     private final File configDirectory;
     private final File logDirectory;
@@ -38,6 +42,17 @@ public class MACConfig {
     private final Map<String, Map<String, String>> jvmProperties = new HashMap<>();
     private final int numTservers;
     private final Map<String, String> zooCfg;
+    private final File templateCacheDirectory;
+    private final boolean inJvm;
+    private final boolean embeddedZooKeeper;
+    private final File classDataSharingDirectory;
+    private final boolean gracefulShutdown;
+    private final int resourceSamplingInterval;
+    private final File metricsDirectory;
+    private final File nativeMapsDirectory;
+    private final File ramDiskDirectory;
+    private final Map<String, String> coreSite;
+    private MemoryBudget memoryBudget;
 
     private MACConfig(
             String instanceName,
@@ -46,6 +61,8 @@ public class MACConfig {
             String id,
             boolean logToFile,
             int zooKeeperStartupTimeout,
+            int startupReadinessTimeout,
+            int shutdownTimeout,
             File baseDirectory,
             String zooKeeperHost,
             int zooKeeperPort,
@@ -58,7 +75,18 @@ public class MACConfig {
             Map<String, String> accumuloInitJvmProperties,
             int numTservers,
             Map<String, String> zooCfg,
-            Boolean forceExternalZookeeper
+            Boolean forceExternalZookeeper,
+            File templateCacheDirectory,
+            boolean inJvm,
+            boolean embeddedZooKeeper,
+            File classDataSharingDirectory,
+            boolean gracefulShutdown,
+            int resourceSamplingInterval,
+            File metricsDirectory,
+            File nativeMapsDirectory,
+            File ramDiskDirectory,
+            Map<String, String> coreSite,
+            MemoryBudget memoryBudget
     ) {
         this.instanceName = instanceName;
         this.rootPassword = rootPassword;
@@ -66,6 +94,8 @@ public class MACConfig {
         this.id = id;
         this.logToFile = logToFile;
         this.zooKeeperStartupTimeout = zooKeeperStartupTimeout;
+        this.startupReadinessTimeout = startupReadinessTimeout;
+        this.shutdownTimeout = shutdownTimeout;
         this.baseDirectory = baseDirectory;
         this.configDirectory = new File(baseDirectory, "conf");
         this.logDirectory = new File(baseDirectory, "logs");
@@ -81,6 +111,17 @@ public class MACConfig {
         this.numTservers = numTservers;
         this.zooCfg = zooCfg;
         this.forceExternalZookeeper = forceExternalZookeeper;
+        this.templateCacheDirectory = templateCacheDirectory;
+        this.inJvm = inJvm;
+        this.embeddedZooKeeper = embeddedZooKeeper;
+        this.classDataSharingDirectory = classDataSharingDirectory;
+        this.gracefulShutdown = gracefulShutdown;
+        this.resourceSamplingInterval = resourceSamplingInterval;
+        this.metricsDirectory = metricsDirectory;
+        this.nativeMapsDirectory = nativeMapsDirectory;
+        this.ramDiskDirectory = ramDiskDirectory;
+        this.coreSite = coreSite;
+        this.memoryBudget = memoryBudget;
     }
 
     /**
@@ -143,6 +184,144 @@ public class MACConfig {
         return this.zooKeeperStartupTimeout;
     }
 
+    /**
+     * Returns time to wait for the tablet servers, manager and metadata
+     * tablets to be ready in milliseconds. Zero or less means
+     * {@link MAC#start()} does not wait.
+     *
+     * @return time to wait for the cluster to be ready in milliseconds.
+     * @since 2.1.3-2
+     */
+    public int getStartupReadinessTimeout() {
+        return this.startupReadinessTimeout;
+    }
+
+    /**
+     * Returns time to wait for each process to exit in milliseconds before
+     * it is killed forcibly.
+     *
+     * @return time to wait for each process to exit in milliseconds.
+     * @since 2.1.3-2
+     */
+    public int getShutdownTimeout() {
+        return this.shutdownTimeout;
+    }
+
+    /**
+     * Returns true if {@link MAC#stop()} asks the manager to shut the
+     * cluster down cleanly before stopping processes.
+     *
+     * @return true if the manager is asked to shut the cluster down cleanly.
+     * @since 2.1.3-2
+     */
+    public boolean shouldShutdownGracefully() {
+        return this.gracefulShutdown;
+    }
+
+    /**
+     * Returns the time between resource usage samples of each process in
+     * milliseconds. Zero means processes are not sampled.
+     *
+     * @return the time between resource usage samples in milliseconds.
+     * @since 2.1.3-2
+     */
+    public int getResourceSamplingInterval() {
+        return this.resourceSamplingInterval;
+    }
+
+    /**
+     * Returns the directory accumulo servers write metrics snapshots to.
+     * Null means metrics are not collected.
+     *
+     * @return the metrics directory, or null if metrics are not collected.
+     * @since 2.1.3-2
+     */
+    public File getMetricsDir() {
+        return this.metricsDirectory;
+    }
+
+    /**
+     * Returns the directory the native maps library is cached in. Null means
+     * tablet servers use Java in-memory maps.
+     *
+     * @return the native maps directory, or null if native maps are not used.
+     * @since 2.1.3-2
+     */
+    public File getNativeMapsDir() {
+        return this.nativeMapsDirectory;
+    }
+
+    /**
+     * Returns the directory on a RAM disk holding the accumulo volume and
+     * zookeeper data. Null means they are on {@link #getBaseDirectory()}.
+     *
+     * @return the RAM disk directory, or null if no RAM disk is used.
+     * @since 2.1.3-2
+     */
+    public File getRamDiskDir() {
+        return this.ramDiskDirectory;
+    }
+
+    /**
+     * Returns the hadoop properties written to {@code core-site.xml} in the
+     * configuration directory. The file is not written if this is empty.
+     *
+     * @return the hadoop properties for spawned processes.
+     * @since 2.1.3-2
+     */
+    public Map<String, String> getCoreSiteConfig() {
+        return this.coreSite;
+    }
+
+    /**
+     * Returns how memory is divided across the spawned processes, when set
+     * with {@link MACConfigBuilder#withMemoryBudget(long)}.
+     *
+     * @return the memory budget, or null if there is none.
+     * @since 2.1.3-2
+     */
+    public MemoryBudget getMemoryBudget() {
+        return this.memoryBudget;
+    }
+
+    /**
+     * Enable native in-memory maps in the tablet servers, loading them from
+     * the given library. Called by {@link MAC#start()} once the library is
+     * available.
+     *
+     * @param library - the native maps library.
+     */
+    void enableNativeMaps(File library) {
+        String directory = library.getParentFile().getAbsolutePath();
+        siteConfig.put("tserver.memory.maps.native.enabled", "true");
+        if (memoryBudget != null && memoryBudget.getNativeMapsMemory() > 0) {
+            siteConfig.put("tserver.memory.maps.max", memoryBudget.getNativeMapsMemory() / (1024 * 1024) + "M");
+        }
+        Map<String, String> tserverJvmProperties = getAccumuloTserverJvmProperties();
+        tserverJvmProperties.put("-Daccumulo.native.lib.path", directory);
+        tserverJvmProperties.put("-Djava.library.path", directory);
+    }
+
+    /**
+     * Give the memory kept off the heap for native maps back to the tablet
+     * server heaps, since the library is not available. Called by
+     * {@link MAC#start()} in place of {@link #enableNativeMaps(File)}.
+     *
+     * @return the bytes given back to each tablet server, 0 if none were kept.
+     */
+    long disableNativeMaps() {
+        if (memoryBudget == null || memoryBudget.getNativeMapsMemory() == 0) {
+            return 0;
+        }
+        MemoryBudget previous = memoryBudget;
+        memoryBudget = previous.withoutNativeMaps();
+        memoryBudget.getTabletServer().replace(getAccumuloTserverJvmProperties(), previous.getTabletServer());
+        siteConfig.replace("tserver.memory.maps.max",
+                previous.getJavaMapsMemory() / (1024 * 1024) + "M",
+                memoryBudget.getJavaMapsMemory() / (1024 * 1024) + "M");
+        return previous.getNativeMapsMemory();
+    }
+
     /**
      * Returns the location of the zoo.cfg file.
      *
@@ -153,6 +332,16 @@ public class MACConfig {
         return new File(this.configDirectory, "zoo.cfg");
     }
 
+    /**
+     * Returns the directory where generated configuration files are stored.
+     *
+     * @return the directory where generated configuration files are stored.
+     * @since 2.1.3-2
+     */
+    public File getConfDir() {
+        return this.configDirectory;
+    }
+
     /**
      * Returns the log directory where log files should be stored.
      *
@@ -201,6 +390,80 @@ public class MACConfig {
      */
     public File getBaseDirectory() { return this.baseDirectory; }
 
+    /**
+     * Returns the directory backing the default accumulo volume.
+     *
+     * @return the directory backing the default accumulo volume.
+     * @since 2.1.3-2
+     */
+    public File getAccumuloDataDirectory() {
+        return new File(this.ramDiskDirectory != null ? this.ramDiskDirectory : this.baseDirectory, "accumulo-data");
+    }
+
+    /**
+     * Returns the directory the spawned zookeeper keeps its data in.
+     *
+     * @return the directory the spawned zookeeper keeps its data in.
+     * @since 2.1.3-2
+     */
+    public File getZooKeeperDataDirectory() {
+        return new File(this.zooCfg.get("dataDir"));
+    }
+
+    /**
+     * Returns the directory initialized instance templates are cached in,
+     * or null if templates are disabled.
+     *
+     * @return the instance template cache directory, or null.
+     * @since 2.1.3-2
+     */
+    public File getTemplateCacheDirectory() {
+        return this.templateCacheDirectory;
+    }
+
+    /**
+     * Returns whether cluster processes run inside this JVM instead of
+     * being forked.
+     *
+     * @return whether cluster processes run inside this JVM.
+     * @since 2.1.3-2
+     */
+    public boolean shouldRunInJvm() {
+        return this.inJvm;
+    }
+
+    /**
+     * Returns whether zookeeper is hosted inside this JVM instead of in a
+     * spawned process.
+     *
+     * @return whether zookeeper is hosted inside this JVM.
+     * @since 2.1.3-2
+     */
+    public boolean shouldEmbedZooKeeper() {
+        return this.embeddedZooKeeper;
+    }
+
+    /**
+     * Returns the directory class data sharing archives are cached in, or
+     * null if class data sharing is disabled.
+     *
+     * @return the class data sharing archive directory, or null.
+     * @since 2.1.3-2
+     */
+    public File getClassDataSharingDirectory() {
+        return this.classDataSharingDirectory;
+    }
+
+    /**
+     * Returns the key/value pairs to use for zoo.cfg
+     *
+     * @return the key/value pairs to use for zoo.cfg
+     * @since 2.1.3-2
+     */
+    public Map<String, String> getZooKeeperProperties() {
+        return this.zooCfg;
+    }
+
     /**
      * Returns the actual bound zookeeper port. If -1 was provided, then a
      * random port will be selected. So once this function has been called once
@@ -262,6 +525,21 @@ public class MACConfig {
         configDirectory.mkdirs();
         logDirectory.mkdirs();
 
+        if (ramDiskDirectory != null) {
+            ramDiskDirectory.mkdirs();
+        }
+
+        if (metricsDirectory != null) {
+            metricsDirectory.mkdirs();
+            // Snapshots from a previous run would be mistaken for this one.
+            File[] stale = metricsDirectory.listFiles();
+            if (stale != null) {
+                for (File file : stale) {
+                    file.delete();
+                }
+            }
+        }
+
         File zooCfgFile = new File(configDirectory, "zoo.cfg");
         if (!zooCfgFile.exists()) {
             FileWriter fw = new FileWriter(zooCfgFile);
@@ -286,6 +564,20 @@ public class MACConfig {
             accumuloProps.store(fileWriter, null);
             fileWriter.close();
         }
+
+        File coreSiteFile = new File(configDirectory, "core-site.xml");
+        if (!coreSite.isEmpty() && !coreSiteFile.exists()) {
+            try (FileWriter fileWriter = new FileWriter(coreSiteFile)) {
+                fileWriter.write("<?xml version=\"1.0\"?>\n<configuration>\n");
+                for (Map.Entry<String, String> item : coreSite.entrySet()) {
+                    fileWriter.write("  <property>\n");
+                    fileWriter.write("    <name>" + escapeXmlString(item.getKey()) + "</name>\n");
+                    fileWriter.write("    <value>" + escapeXmlString(item.getValue()) + "</value>\n");
+                    fileWriter.write("  </property>\n");
+                }
+                fileWriter.write("</configuration>\n");
+            }
+        }
     }
 
     private String escapeXmlString(String s) {
@@ -375,6 +667,8 @@ public class MACConfig {
         private int zooKeeperPort = -1;
         private Boolean useExternalZookeeper = null;
         private int zooKeeperStartupTimeout = 10000;
+        private int startupReadinessTimeout = 60000;
+        private int shutdownTimeout = 10000;
         private String accumuloBindAddress = null;
         private final Map<String, String> accumuloGCJvmProperties = new HashMap<>();
         private final Map<String, String> accumuloManagerJvmProperties = new HashMap<>();
@@ -406,6 +700,20 @@ public class MACConfig {
         };
 
         private int numTservers = 2;
+        private File templateCacheDirectory = null;
+        private boolean inJvm = false;
+        private boolean embeddedZooKeeper = false;
+        private File zooKeeperDataDirectory = null;
+        private File classDataSharingDirectory = null;
+        private boolean gracefulShutdown = false;
+        private int resourceSamplingInterval = 0;
+        private boolean metrics = false;
+        private File nativeMapsDirectory = null;
+        private boolean nativeMaps = false;
+        private File ramDiskRoot = null;
+        private boolean fastTimers = false;
+        private long memoryBudget = 0;
+        private final Map<String, String> coreSite = new HashMap<>();
 
         /**
          * Sets the instance name the accumulo cluster will use.
@@ -504,6 +812,122 @@ public class MACConfig {
             return this;
         }
 
+        /**
+         * Sets the total time {@link MAC#start()} waits for the cluster to
+         * be usable. The cluster is usable once every tablet server and
+         * the manager hold their zookeeper locks, and the root and
+         * metadata tablets are hosted. Set this to zero to return as soon
+         * as the processes are spawned.
+         *
+         * @param msTimeout - Milliseconds to wait for the cluster to be ready
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withStartupReadinessTimeoutMS(int msTimeout) {
+            this.startupReadinessTimeout = msTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the time {@link MAC#stop()} waits for each process to exit
+         * before killing it forcibly. Processes are stopped concurrently,
+         * so this bounds each stage of the shutdown rather than the sum of
+         * every process.
+         *
+         * @param msTimeout - Milliseconds to wait for each process to exit
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withShutdownTimeoutMS(int msTimeout) {
+            this.shutdownTimeout = msTimeout;
+            return this;
+        }
+
+        /**
+         * Ask the manager to shut the cluster down cleanly when
+         * {@link MAC#stop()} is called. The manager unloads every tablet
+         * and stops the tablet servers itself before the processes are
+         * destroyed. This is slower than the default, but leaves the
+         * instance in a clean state, which matters if the data directory
+         * is reused.
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withGracefulShutdown() {
+            this.gracefulShutdown = true;
+            return this;
+        }
+
+        /**
+         * Sample the RSS, CPU time, thread count, open file descriptors and
+         * storage I/O of every spawned process from {@code /proc}. Samples
+         * are available from {@link MAC#getResourceSamples(String)} and are
+         * written to {@code resource-samples.csv} in the log directory when
+         * the cluster stops. Only works on Linux.
+         *
+         * @param msInterval - Milliseconds between samples
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withResourceSampling(int msInterval) {
+            if (msInterval <= 0) {
+                throw new IllegalArgumentException("msInterval must be greater than 0");
+            }
+            this.resourceSamplingInterval = msInterval;
+            return this;
+        }
+
+        /**
+         * Collect the micrometer metrics of the tablet servers, manager and
+         * gc. Each server writes a snapshot of its meters to
+         * {@link #baseDirectory}/metrics about once a second, and
+         * {@link MAC#getMetrics()} aggregates them.
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withMetrics() {
+            this.metrics = true;
+            return this;
+        }
+
+        /**
+         * Use accumulo's native in-memory maps in the tablet servers, like a
+         * production cluster would, instead of keeping them on the Java heap.
+         * The native library is built for the current platform on first use
+         * and cached in the {@code mac-native/<accumulo version>-<os.arch>}
+         * folder of {@code java.io.tmpdir}, so every cluster on this machine
+         * reuses it. Building needs Linux, a JDK, {@code make} and a C++
+         * compiler. If the library cannot be
+         * built, MAC logs a warning and uses Java in-memory maps.
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withNativeMaps() {
+            this.nativeMaps = true;
+            return this;
+        }
+
+        /**
+         * Same as {@link #withNativeMaps()}, but caches the library in the
+         * given directory instead. The directory should only be shared by
+         * clusters of the same accumulo version and platform. If the
+         * directory already contains {@code libaccumulo.so}, or the
+         * {@code accumulo-native} source tarball, it is used instead of
+         * building or downloading.
+         *
+         * @param directory - where the native library is cached.
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withNativeMaps(File directory) {
+            this.nativeMaps = true;
+            this.nativeMapsDirectory = directory;
+            return this;
+        }
+
         /**
          * Sets the zookeeper hostname accumulo should use. This is typically
          * used when you have an external zookeeper you want to manage separate
@@ -680,6 +1104,238 @@ public class MACConfig {
             return this;
         }
 
+        /**
+         * Reuse a cached, already initialized instance instead of running
+         * accumulo's init and set goal state processes on every start.
+         * <p>
+         * The first cluster started with a given instance name, root
+         * password and site configuration initializes normally and saves
+         * a copy of its zookeeper data and accumulo volume into the cache.
+         * Later clusters copy that template, hard linking the accumulo
+         * files where the file system allows it.
+         * </p>
+         * <p>
+         * Templates are only used when MAC spawns its own zookeeper and
+         * uses its default volume. The cache lives in the
+         * {@code mac-templates} folder of {@code java.io.tmpdir}.
+         * </p>
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withInitializedTemplateCache() {
+            return withInitializedTemplateCache(new File(System.getProperty("java.io.tmpdir"), "mac-templates"));
+        }
+
+        /**
+         * Same as {@link #withInitializedTemplateCache()}, but stores the
+         * templates in the given directory.
+         *
+         * @param directory - Where to cache initialized instance templates.
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withInitializedTemplateCache(File directory) {
+            this.templateCacheDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Run every cluster process (zookeeper, tablet servers, manager, GC,
+         * init and set goal state) inside this JVM instead of forking a new
+         * {@code java} process for each one.
+         * <p>
+         * Each process gets its own classloader and thread group, which
+         * saves the JVM startup cost and a large amount of memory. Each
+         * process only sees its own {@code -D} system properties. JVM flags
+         * other than {@code -D} properties are ignored, and environment
+         * variables are not set.
+         * </p>
+         * <p>
+         * This changes JVM-wide state while any in-JVM process runs:
+         * {@link System#out} and {@link System#err} are replaced with
+         * streams that route each process's output, the system properties
+         * are replaced with ones that route each process's properties, and
+         * a {@link SecurityManager} wrapping any existing one is installed
+         * to trap {@code System.exit}. On Java 18 and newer, the latter
+         * needs the JVM to be started with
+         * {@code -Djava.security.manager=allow}; without it, init and set
+         * goal state are forked instead. Everything is restored once the
+         * last in-JVM process exits. See {@link InJvmProcess} for details.
+         * </p>
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withInJvmExecution() {
+            this.inJvm = true;
+            return this;
+        }
+
+        /**
+         * Host zookeeper inside this JVM using zookeeper's server API
+         * instead of spawning a separate zookeeper process.
+         * <p>
+         * This skips forking a JVM and polling for {@code ruok}. Since
+         * test clusters don't need crash durability, the embedded server
+         * does not fsync its transaction log unless {@code forceSync=yes}
+         * is set with {@link #withZookeeperProperty(String, String)}.
+         * Ignored if an external zookeeper is used.
+         * </p>
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withEmbeddedZooKeeper() {
+            this.embeddedZooKeeper = true;
+            return this;
+        }
+
+        /**
+         * Sets where the zookeeper started by MAC keeps its snapshots and
+         * transaction logs. By default, this is {@link #baseDirectory}/conf.
+         * Pointing this at a tmpfs location such as {@code /dev/shm} removes
+         * disk latency from every zookeeper write.
+         *
+         * @param directory - The zookeeper data directory.
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withZooKeeperDataDirectory(File directory) {
+            this.zooKeeperDataDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Keep the accumulo volume, including write-ahead logs, and the
+         * zookeeper data in {@code /dev/shm} so tests are not slowed down by
+         * disk I/O. See {@link #withRamDisk(File)}.
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withRamDisk() {
+            return withRamDisk(new File("/dev/shm"));
+        }
+
+        /**
+         * Keep the accumulo volume, including write-ahead logs, and the
+         * zookeeper data in a directory under the given tmpfs mount.
+         * <p>
+         * This also trades crash durability for speed: user tables default
+         * to {@code table.durability=flush}, so write-ahead logs are not
+         * synced, and zookeeper does not sync its transaction log. Everything
+         * on the RAM disk is deleted when the cluster stops, and
+         * {@link MAC#getRamDiskUsage()} reports how much memory it uses.
+         * Configuration and logs stay in {@link #baseDirectory}.
+         * </p>
+         *
+         * @param tmpfs - a directory on a RAM backed file system.
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withRamDisk(File tmpfs) {
+            this.ramDiskRoot = tmpfs;
+            return this;
+        }
+
+        /**
+         * Have accumulo read and write its {@code file://} volumes through
+         * hadoop's {@code RawLocalFileSystem} instead of the checksummed
+         * {@code LocalFileSystem}. This skips the {@code .crc} file written
+         * next to every RFile and write-ahead log, and checksum verification
+         * on every read, which buys nothing on a local test cluster.
+         * <p>
+         * This is set in a {@code core-site.xml} in the configuration
+         * directory, so it only applies if that directory is on the
+         * classpath of the spawned processes, which it is unless a custom
+         * {@link ClasspathLoader} leaves it out.
+         * </p>
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withRawLocalFileSystem() {
+            coreSite.put("fs.file.impl", "org.apache.hadoop.fs.RawLocalFileSystem");
+            return this;
+        }
+
+        /**
+         * Shorten the timers accumulo uses for background work, so tests
+         * waiting on it finish in seconds instead of minutes.
+         * <p>
+         * The garbage collector starts after a second and runs every second,
+         * tablet servers check for major compactions every second and minor
+         * compact tablets idle for five seconds, idle scan and update
+         * sessions are dropped after ten seconds, and the manager recovers
+         * the logs of dead tablet servers after a second. The zookeeper
+         * session timeout is lowered to ten seconds, so dead servers lose
+         * their locks sooner. Properties set with
+         * {@link #withAccumuloSiteProperty(Property, String)} win. See
+         * {@link MAC#awaitCompactionsDrained(long, TimeUnit)} and
+         * {@link MAC#awaitGcCycle(long, TimeUnit)} to wait on that work.
+         * </p>
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withFastTimers() {
+            this.fastTimers = true;
+            return this;
+        }
+
+        /**
+         * Use dynamic AppCDS archives to speed up class loading in every
+         * spawned process.
+         * <p>
+         * The first process spawned for each main class dumps the classes
+         * it loaded into an archive when it exits. Every later process with
+         * the same main class and jars maps that archive instead of loading
+         * the classes from the jars. Class directories on the classpath are
+         * copied into jars first, and directories without classes, such as
+         * the configuration directory, are moved after the jars. This
+         * requires Java 13 or newer and is ignored otherwise. Archives are
+         * cached in the {@code mac-cds} folder of {@code java.io.tmpdir}
+         * and shared by every cluster.
+         * </p>
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withClassDataSharing() {
+            return withClassDataSharing(new File(System.getProperty("java.io.tmpdir"), "mac-cds"));
+        }
+
+        /**
+         * Same as {@link #withClassDataSharing()}, but stores the archives in
+         * the given directory.
+         *
+         * @param directory - Where to cache class data sharing archives.
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withClassDataSharing(File directory) {
+            this.classDataSharingDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Tune the short-lived init and set goal state processes for
+         * startup time rather than throughput. This limits JIT compilation
+         * to the first tier, uses the serial garbage collector and turns
+         * off perf data. These processes only run for a few seconds, so the
+         * optimizing compiler and a parallel collector are pure overhead.
+         *
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withStartupOptimizedInitJvm() {
+            accumuloInitJvmProperties.put("-XX:TieredStopAtLevel", "1");
+            accumuloInitJvmProperties.put("-XX:+UseSerialGC", null);
+            accumuloInitJvmProperties.put("-XX:-UsePerfData", null);
+            return this;
+        }
+
         /**
          * Modify the accumulo-site.xml with the associated properties.
          * Note that if {@link #withBaseDirectory(File)} is used and a
@@ -728,6 +1384,37 @@ public class MACConfig {
             return withZookeeperJavaProperty(key, value);
         }
 
+        /**
+         * Limit the memory every spawned process together may use.
+         * <p>
+         * The budget is divided across the tablet servers, which get four
+         * shares each, and the manager, the gc, the zookeeper process and the
+         * init processes, which get one. Each process is given a maximum heap,
+         * metaspace and direct memory from its share, and
+         * {@code tserver.memory.maps.max} is sized to fit the tablet server
+         * heap, or the memory kept off the heap for
+         * {@link #withNativeMaps()}. JVM flags and site properties you set
+         * yourself win.
+         * </p>
+         * <p>
+         * When this JVM runs in a container with a cgroup memory limit, the
+         * budget is lowered to fit in the limit next to this JVM's heap.
+         * In-JVM processes share this JVM's heap, so only the in-memory map
+         * size applies to them.
+         * </p>
+         *
+         * @param bytes - the memory, in bytes, every process together may use.
+         * @return this
+         * @since 2.1.3-2
+         */
+        public MACConfigBuilder withMemoryBudget(long bytes) {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("Memory budget must be greater than 0");
+            }
+            this.memoryBudget = bytes;
+            return this;
+        }
+
         /**
          * Build the specified config.
          *
@@ -747,18 +1434,86 @@ public class MACConfig {
                 this.classpathLoader = new DefaultClasspathLoader(Collections.singletonList(confDir.getAbsolutePath()));
             }
 
-            File accumuloData = new File(this.baseDirectory, "accumulo-data");
+            File ramDisk = null;
+            if (ramDiskRoot != null) {
+                if (!ramDiskRoot.isDirectory()) {
+                    throw new IllegalArgumentException("RAM disk " + ramDiskRoot + " does not exist or is not a directory.");
+                }
+                ramDisk = new File(ramDiskRoot, "mac-" + this.macId);
+                if (zooKeeperDataDirectory == null) {
+                    zooKeeperDataDirectory = new File(ramDisk, "zookeeper");
+                }
+                zooCfg.putIfAbsent("forceSync", "no");
+                setPropertyIfNotSet("table.durability", "flush");
+            }
+
+            File accumuloData = new File(ramDisk != null ? ramDisk : this.baseDirectory, "accumulo-data");
 
             setPropertyIfNotSet("instance.volumes", accumuloData.toURI().toString());
             setPropertyIfNotSet("general.classpaths", libDir.getAbsolutePath() + "/[^.].*[.]jar");
             setPropertyIfNotSet("general.dynamic.classpaths", libExtDir.getAbsolutePath() + "/[^.].*[.]jar");
             setPropertyIfNotSet("instance.zookeeper.host", zooKeeperHost + ":" + zooKeeperPort);
 
+            if (fastTimers) {
+                setPropertyIfNotSet("gc.cycle.start", "1s");
+                setPropertyIfNotSet("gc.cycle.delay", "1s");
+                setPropertyIfNotSet("manager.recovery.delay", "1s");
+                setPropertyIfNotSet("manager.lease.recovery.interval", "1s");
+                setPropertyIfNotSet("tserver.compaction.major.delay", "1s");
+                setPropertyIfNotSet("table.compaction.minor.idle", "5s");
+                setPropertyIfNotSet("tserver.session.idle.max", "10s");
+                setPropertyIfNotSet("tserver.session.update.idle.max", "10s");
+                setPropertyIfNotSet("instance.zookeeper.timeout", "10s");
+            }
+
+            File metricsDir = null;
+            if (metrics) {
+                metricsDir = new File(this.baseDirectory, "metrics");
+                setPropertyIfNotSet("general.micrometer.enabled", "true");
+                setPropertyIfNotSet("general.micrometer.jvm.metrics.enabled", "true");
+                setPropertyIfNotSet("general.micrometer.factory", MACMeterRegistryFactory.class.getName());
+                String dirProperty = "-D" + MACMeterRegistryFactory.METRICS_DIR_PROPERTY;
+                accumuloGCJvmProperties.putIfAbsent(dirProperty, metricsDir.getAbsolutePath());
+                accumuloManagerJvmProperties.putIfAbsent(dirProperty, metricsDir.getAbsolutePath());
+                accumuloTserverJvmProperties.putIfAbsent(dirProperty, metricsDir.getAbsolutePath());
+            }
+
+            File nativeDir = null;
+            if (nativeMaps) {
+                nativeDir = nativeMapsDirectory != null
+                        ? nativeMapsDirectory
+                        : new File(new File(System.getProperty("java.io.tmpdir"), "mac-native"),
+                                Constants.VERSION + "-" + System.getProperty("os.arch"));
+            }
+
             if (numTservers <= 0) {
                 throw new IllegalArgumentException("numTservers must be greater than 0");
             }
 
-            zooCfg.put("dataDir", confDir.getAbsolutePath());
+            MemoryBudget budget = null;
+            if (memoryBudget > 0) {
+                boolean externalZooKeeper = useExternalZookeeper != null
+                        ? useExternalZookeeper
+                        : !(zooKeeperHost.equals("localhost") || zooKeeperHost.equals("127.0.0.1"));
+                boolean spawnsZooKeeper = !embeddedZooKeeper && !externalZooKeeper;
+                boolean reserveNativeMaps = nativeMaps && !siteXml.containsKey("tserver.memory.maps.max");
+                budget = new MemoryBudget(MemoryBudget.fitToContainer(memoryBudget), numTservers, spawnsZooKeeper, reserveNativeMaps);
+                budget.getTabletServer().applyTo(accumuloTserverJvmProperties);
+                budget.getManager().applyTo(accumuloManagerJvmProperties);
+                budget.getGarbageCollector().applyTo(accumuloGCJvmProperties);
+                budget.getInit().applyTo(accumuloInitJvmProperties);
+                if (spawnsZooKeeper) {
+                    budget.getZooKeeper().applyTo(zookeeperJvmProperties);
+                }
+                // Native maps replace this once the library is loaded.
+                setPropertyIfNotSet("tserver.memory.maps.max", budget.getJavaMapsMemory() / (1024 * 1024) + "M");
+            }
+
+            if (zooKeeperDataDirectory != null) {
+                zooCfg.put("dataDir", zooKeeperDataDirectory.getAbsolutePath());
+            } else {
+                zooCfg.put("dataDir", confDir.getAbsolutePath());
+            }
 
             return new MACConfig(
                     this.instanceName,
@@ -767,6 +1522,8 @@ public class MACConfig {
                     this.macId,
                     this.logToFile,
                     this.zooKeeperStartupTimeout,
+                    this.startupReadinessTimeout,
+                    this.shutdownTimeout,
                     baseDirectory,
                     this.zooKeeperHost,
                     this.zooKeeperPort,
@@ -779,7 +1536,18 @@ public class MACConfig {
                     accumuloInitJvmProperties,
                     numTservers,
                     zooCfg,
-                    useExternalZookeeper
+                    useExternalZookeeper,
+                    templateCacheDirectory,
+                    inJvm,
+                    embeddedZooKeeper,
+                    classDataSharingDirectory,
+                    gracefulShutdown,
+                    resourceSamplingInterval,
+                    metricsDir,
+                    nativeDir,
+                    ramDisk,
+                    coreSite,
+                    budget
             );
         }
 
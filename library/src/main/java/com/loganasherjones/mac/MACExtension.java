@@ -0,0 +1,216 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * JUnit 5 extension behind {@link MiniAccumuloCluster}.
+ * <p>
+ * Clusters are kept in the root extension context, so they are shared by
+ * every test class in the JVM with the same name and configuration. Each
+ * test class holds a reference to its cluster while it runs. The cluster
+ * is stopped once no test class holds a reference and JUnit has finished
+ * the test run, so clusters are started at most once per JVM.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class MACExtension implements BeforeAllCallback, ParameterResolver {
+    private static final Logger log = LoggerFactory.getLogger(MACExtension.class);
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(MACExtension.class);
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        getCluster(context);
+    }
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        Class<?> type = parameterContext.getParameter().getType();
+        return type == MAC.class
+                || type == AccumuloClient.class
+                || (type == MACNamespace.class && extensionContext.getTestMethod().isPresent());
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        Class<?> type = parameterContext.getParameter().getType();
+        MAC mac = getCluster(extensionContext);
+        if (type == MAC.class) {
+            return mac;
+        }
+        if (type == AccumuloClient.class) {
+            AccumuloClient client = mac.getRootClient();
+            extensionContext.getStore(NAMESPACE).put(new Object(), (ExtensionContext.Store.CloseableResource) client::close);
+            return client;
+        }
+        return extensionContext.getStore(NAMESPACE)
+                .getOrComputeIfAbsent(TestNamespace.class, k -> new TestNamespace(mac), TestNamespace.class)
+                .namespace;
+    }
+
+    /**
+     * Returns the cluster for the test class of the context, taking a
+     * reference for the class the first time it is asked for.
+     */
+    private MAC getCluster(ExtensionContext context) {
+        ExtensionContext classContext = context;
+        while (classContext.getTestMethod().isPresent()) {
+            classContext = classContext.getParent().orElseThrow();
+        }
+        MiniAccumuloCluster annotation = findAnnotation(classContext.getRequiredTestClass());
+        String key = annotation.value() + "/" + annotation.config().getName();
+        SharedCluster shared = context.getRoot().getStore(NAMESPACE)
+                .getOrComputeIfAbsent(key, k -> new SharedCluster(key, annotation.config()), SharedCluster.class);
+        return classContext.getStore(NAMESPACE)
+                .getOrComputeIfAbsent(ClassReference.class, k -> new ClassReference(shared), ClassReference.class)
+                .mac;
+    }
+
+    private static MiniAccumuloCluster findAnnotation(Class<?> testClass) {
+        for (Class<?> c = testClass; c != null; c = c.getEnclosingClass()) {
+            MiniAccumuloCluster annotation = c.getAnnotation(MiniAccumuloCluster.class);
+            if (annotation != null) {
+                return annotation;
+            }
+        }
+        throw new ExtensionConfigurationException(testClass.getName() + " is not annotated with @MiniAccumuloCluster");
+    }
+
+    /**
+     * A cluster shared by every test class with the same key. Stored in
+     * the root context, so JUnit closes it once the test run is over.
+     */
+    private static class SharedCluster implements ExtensionContext.Store.CloseableResource {
+        private final String key;
+        private final Class<? extends Supplier<MACConfig>> configClass;
+        private MAC mac;
+        private int references = 0;
+        private boolean runFinished = false;
+
+        SharedCluster(String key, Class<? extends Supplier<MACConfig>> configClass) {
+            this.key = key;
+            this.configClass = configClass;
+        }
+
+        synchronized MAC acquire() {
+            if (runFinished) {
+                throw new IllegalStateException("Cluster " + key + " was already stopped");
+            }
+            if (mac == null) {
+                log.info("Starting shared Mini Accumulo Cluster {}", key);
+                MAC started = new MAC(createConfig());
+                try {
+                    started.start();
+                } catch (Exception e) {
+                    stopQuietly(started);
+                    throw new RuntimeException("Could not start shared Mini Accumulo Cluster " + key, e);
+                }
+                mac = started;
+            }
+            references++;
+            return mac;
+        }
+
+        synchronized void release() {
+            references--;
+            if (references == 0 && runFinished) {
+                stop();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            runFinished = true;
+            if (references == 0) {
+                stop();
+            }
+        }
+
+        private void stop() {
+            if (mac != null) {
+                log.info("Stopping shared Mini Accumulo Cluster {}", key);
+                stopQuietly(mac);
+                mac = null;
+            }
+        }
+
+        private MACConfig createConfig() {
+            try {
+                return configClass.getDeclaredConstructor().newInstance().get();
+            } catch (ReflectiveOperationException e) {
+                throw new ExtensionConfigurationException("Could not create " + configClass.getName()
+                        + ". It must have a public no-arg constructor.", e);
+            }
+        }
+
+        private static void stopQuietly(MAC mac) {
+            try {
+                mac.stop();
+            } catch (Exception e) {
+                log.warn("Error stopping shared Mini Accumulo Cluster", e);
+            }
+        }
+    }
+
+    /**
+     * A test class's reference to a shared cluster, released when the
+     * class is done.
+     */
+    private static class ClassReference implements ExtensionContext.Store.CloseableResource {
+        private final SharedCluster shared;
+        private final MAC mac;
+
+        ClassReference(SharedCluster shared) {
+            this.shared = shared;
+            this.mac = shared.acquire();
+        }
+
+        @Override
+        public void close() {
+            shared.release();
+        }
+    }
+
+    /**
+     * A namespace for a single test, deleted along with its tables when
+     * the test is done.
+     */
+    private static class TestNamespace implements ExtensionContext.Store.CloseableResource {
+        private final MAC mac;
+        private final MACNamespace namespace;
+
+        TestNamespace(MAC mac) {
+            this.mac = mac;
+            this.namespace = new MACNamespace("mac_" + UUID.randomUUID().toString().replace("-", ""));
+            try (AccumuloClient client = mac.getRootClient()) {
+                client.namespaceOperations().create(namespace.getName());
+            } catch (Exception e) {
+                throw new ParameterResolutionException("Could not create namespace " + namespace, e);
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            try (AccumuloClient client = mac.getRootClient()) {
+                for (String table : client.tableOperations().list()) {
+                    if (table.startsWith(namespace.getName() + ".")) {
+                        client.tableOperations().delete(table);
+                    }
+                }
+                client.namespaceOperations().delete(namespace.getName());
+            }
+        }
+    }
+}
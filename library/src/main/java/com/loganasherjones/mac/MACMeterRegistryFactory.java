@@ -0,0 +1,146 @@
+package com.loganasherjones.mac;
+
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.accumulo.core.metrics.MeterRegistryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The micrometer registry factory MAC configures in accumulo servers when
+ * {@link MACConfig.MACConfigBuilder#withMetrics()} is set.
+ * <p>
+ * This runs inside the tablet server, manager and gc. It periodically
+ * writes a snapshot of every meter to
+ * {@code <mac.metrics.dir>/<process name>.metrics}, which
+ * {@link MACMetrics} reads back in the JVM running MAC. Each line holds a
+ * meter name, statistic, value and tags, separated by tabs.
+ * </p>
+ * <p>
+ * The writer thread lives as long as the server: it writes a last snapshot
+ * and stops when it is interrupted, which {@link InJvmProcess} does to the
+ * threads of a process that exits, or when the metrics directory is gone
+ * because the cluster was deleted. A forked server also writes a last
+ * snapshot from a shutdown hook. In-JVM servers skip the hook, since the
+ * JVM outlives them.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class MACMeterRegistryFactory implements MeterRegistryFactory {
+    /**
+     * JVM property holding the directory snapshots are written to.
+     *
+     * @since 2.1.3-2
+     */
+    public static final String METRICS_DIR_PROPERTY = "mac.metrics.dir";
+
+    /**
+     * JVM property holding the time between snapshots in milliseconds.
+     *
+     * @since 2.1.3-2
+     */
+    public static final String METRICS_INTERVAL_PROPERTY = "mac.metrics.interval.ms";
+
+    static final String FILE_SUFFIX = ".metrics";
+
+    private static final Logger log = LoggerFactory.getLogger(MACMeterRegistryFactory.class);
+
+    @Override
+    public MeterRegistry create() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        String dir = System.getProperty(METRICS_DIR_PROPERTY);
+        if (dir == null) {
+            log.warn("{} is not set, metrics will not be written.", METRICS_DIR_PROPERTY);
+            return registry;
+        }
+
+        String inJvmProcess = inJvmProcessName();
+        File file = new File(dir, (inJvmProcess != null ? inJvmProcess : System.getProperty("proc", "unknown")) + FILE_SUFFIX);
+        long intervalMs = Long.getLong(METRICS_INTERVAL_PROPERTY, 1000);
+        // Created from a server thread, so an in-JVM writer joins the process's thread group.
+        Thread writer = new Thread(() -> writeSnapshots(registry, file, intervalMs), "mac-metrics-writer");
+        writer.setDaemon(true);
+        writer.start();
+        if (inJvmProcess == null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeSnapshot(registry, file)));
+        }
+        log.info("Writing metrics to {} every {}ms", file, intervalMs);
+        return registry;
+    }
+
+    /**
+     * Each in-JVM process runs in a thread group named after the process.
+     * Returns null when running in a forked process.
+     */
+    private static String inJvmProcessName() {
+        for (ThreadGroup group = Thread.currentThread().getThreadGroup(); group != null; group = group.getParent()) {
+            if (group.getName().startsWith("mac-")) {
+                return group.getName();
+            }
+        }
+        return null;
+    }
+
+    private static void writeSnapshots(MeterRegistry registry, File file, long intervalMs) {
+        while (true) {
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                writeSnapshot(registry, file);
+                return;
+            }
+            if (!writeSnapshot(registry, file)) {
+                log.debug("{} is gone, no longer writing metrics", file.getParentFile());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns false if the metrics directory no longer exists.
+     */
+    private static boolean writeSnapshot(MeterRegistry registry, File file) {
+        if (!file.getParentFile().isDirectory()) {
+            return false;
+        }
+        StringBuilder out = new StringBuilder();
+        for (Meter meter : registry.getMeters()) {
+            StringBuilder tags = new StringBuilder();
+            for (Tag tag : meter.getId().getTags()) {
+                if (tags.length() > 0) {
+                    tags.append(',');
+                }
+                tags.append(tag.getKey()).append('=').append(tag.getValue());
+            }
+            for (Measurement measurement : meter.measure()) {
+                out.append(meter.getId().getName()).append('\t')
+                        .append(measurement.getStatistic().getTagValueRepresentation()).append('\t')
+                        .append(measurement.getValue()).append('\t')
+                        .append(tags).append('\n');
+            }
+        }
+
+        try {
+            File staging = new File(file.getParentFile(), file.getName() + ".tmp");
+            Files.write(staging.toPath(), out.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(staging.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.debug("Could not write metrics to {}", file, e);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The accumulo server metrics of a running cluster.
+ * <p>
+ * Every tablet server, manager and gc writes a snapshot of its meters
+ * about once a second (see {@link MACMeterRegistryFactory}). Queries read
+ * the latest snapshots, so results lag the servers by up to that
+ * interval. Meter names are the accumulo micrometer names, such as
+ * {@code accumulo.tserver.scans.times}.
+ * </p>
+ *
+ * <pre>{@code
+ * double entriesWritten = mac.getMetrics().sum("accumulo.tserver.ingest.mutations", "count");
+ * }</pre>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class MACMetrics {
+    private static final Logger log = LoggerFactory.getLogger(MACMetrics.class);
+
+    private final File directory;
+
+    /**
+     * Read metrics snapshots from a directory.
+     *
+     * @param directory - where the servers write their snapshots.
+     * @since 2.1.3-2
+     */
+    public MACMetrics(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the latest value of every meter statistic from every process.
+     *
+     * @return every sample in the latest snapshots.
+     * @since 2.1.3-2
+     */
+    public List<Sample> getSamples() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(MACMeterRegistryFactory.FILE_SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<Sample> result = new ArrayList<>();
+        for (File file : files) {
+            String process = file.getName().substring(0, file.getName().length() - MACMeterRegistryFactory.FILE_SUFFIX.length());
+            try {
+                for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    Sample sample = Sample.parse(process, line);
+                    if (sample != null) {
+                        result.add(sample);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Could not read metrics from {}", file, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns every sample of the given meter.
+     *
+     * @param meterName - name of the meter.
+     * @return every sample of the meter, from every process.
+     * @since 2.1.3-2
+     */
+    public List<Sample> find(String meterName) {
+        List<Sample> result = new ArrayList<>();
+        for (Sample sample : getSamples()) {
+            if (sample.getName().equals(meterName)) {
+                result.add(sample);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add up a statistic of a meter across every process and tag.
+     *
+     * @param meterName - name of the meter.
+     * @param statistic - the statistic, such as {@code count}, {@code value},
+     *                  {@code total} or {@code max}.
+     * @return the sum, or zero if there are no samples.
+     * @since 2.1.3-2
+     */
+    public double sum(String meterName, String statistic) {
+        double result = 0;
+        for (Sample sample : find(meterName)) {
+            if (sample.getStatistic().equals(statistic)) {
+                result += sample.getValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The latest value of one statistic of one meter in one process.
+     *
+     * @since 2.1.3-2
+     */
+    public static class Sample {
+        private final String process;
+        private final String name;
+        private final String statistic;
+        private final double value;
+        private final Map<String, String> tags;
+
+        private Sample(String process, String name, String statistic, double value, Map<String, String> tags) {
+            this.process = process;
+            this.name = name;
+            this.statistic = statistic;
+            this.value = value;
+            this.tags = tags;
+        }
+
+        private static Sample parse(String process, String line) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 4) {
+                return null;
+            }
+            Map<String, String> tags = new LinkedHashMap<>();
+            if (!fields[3].isEmpty()) {
+                for (String tag : fields[3].split(",")) {
+                    int eq = tag.indexOf('=');
+                    if (eq > 0) {
+                        tags.put(tag.substring(0, eq), tag.substring(eq + 1));
+                    }
+                }
+            }
+            try {
+                return new Sample(process, fields[0], fields[1], Double.parseDouble(fields[2]), tags);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Returns the name of the process that reported the sample.
+         *
+         * @return the name of the process that reported the sample.
+         * @since 2.1.3-2
+         */
+        public String getProcess() {
+            return process;
+        }
+
+        /**
+         * Returns the meter name.
+         *
+         * @return the meter name.
+         * @since 2.1.3-2
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the statistic, such as {@code count} or {@code total}.
+         *
+         * @return the statistic.
+         * @since 2.1.3-2
+         */
+        public String getStatistic() {
+            return statistic;
+        }
+
+        /**
+         * Returns the value of the statistic.
+         *
+         * @return the value of the statistic.
+         * @since 2.1.3-2
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the tags of the meter.
+         *
+         * @return the tags of the meter.
+         * @since 2.1.3-2
+         */
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        @Override
+        public String toString() {
+            return process + " " + name + tags + " " + statistic + "=" + value;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.loganasherjones.mac;
+
+/**
+ * An Accumulo namespace created for a single test by {@link MACExtension}.
+ * The namespace and every table in it are deleted once the test finishes.
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class MACNamespace {
+    private final String name;
+
+    /**
+     * Wrap the name of an existing namespace.
+     *
+     * @param name - name of the namespace.
+     * @since 2.1.3-2
+     */
+    public MACNamespace(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the namespace.
+     *
+     * @return the name of the namespace.
+     * @since 2.1.3-2
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the fully-qualified name of a table in this namespace.
+     *
+     * @param table - the table name, without a namespace.
+     * @return the fully-qualified table name.
+     * @since 2.1.3-2
+     */
+    public String table(String table) {
+        return name + "." + table;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,290 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A pool of started Mini Accumulo Clusters.
+ * <p>
+ * Starting a cluster takes a long time. The pool starts clusters in the
+ * background and hands them out with {@link #lease()}. When a lease is
+ * closed, the cluster is reset with {@link MAC#reset()} and put back into
+ * the pool without blocking the caller.
+ * Clusters that fail to reset are stopped and replaced. Once starting a
+ * cluster failed three times in a row, the pool
+ * stops retrying, and leases fail with the last error instead of waiting
+ * for a cluster that will never start.
+ * </p>
+ *
+ * <pre>{@code
+ * static MACPool pool = new MACPool(2);
+ *
+ * @Test
+ * public void myTest() throws Exception {
+ *     try (MACPool.Lease lease = pool.lease()) {
+ *         AccumuloClient client = lease.getMAC().getRootClient();
+ *         // Do whatever with the client
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class MACPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MACPool.class);
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long POLL_MS = 250;
+    private static final int MAX_START_ATTEMPTS = 3;
+
+    private final Supplier<MACConfig> configSupplier;
+    private final LinkedBlockingQueue<MAC> ready = new LinkedBlockingQueue<>();
+    private final List<MAC> all = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService background;
+    private final AtomicReference<Exception> lastFailure = new AtomicReference<>();
+    private final AtomicInteger startFailures = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * Create a pool of clusters with the default configuration.
+     *
+     * @param size - the number of clusters to keep started.
+     * @since 2.1.3-2
+     */
+    public MACPool(int size) {
+        this(size, () -> new MACConfig.MACConfigBuilder().build());
+    }
+
+    /**
+     * Create a pool of clusters. The supplier is called once for every
+     * cluster the pool starts, so it must return a fresh configuration
+     * (with its own ID and base directory) each time.
+     *
+     * @param size - the number of clusters to keep started.
+     * @param configSupplier - creates the configuration for each cluster.
+     * @since 2.1.3-2
+     */
+    public MACPool(int size, Supplier<MACConfig> configSupplier) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be greater than 0");
+        }
+        this.configSupplier = configSupplier;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.background = Executors.newFixedThreadPool(size, r -> {
+            Thread t = new Thread(r, "mac-pool-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < size; i++) {
+            background.submit(this::startCluster);
+        }
+    }
+
+    /**
+     * Take a started cluster from the pool, waiting for one to be ready.
+     *
+     * @return a lease on a started cluster.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the pool is closed, or no cluster
+     * could be started. The cause is the last error starting a cluster.
+     * @since 2.1.3-2
+     */
+    public Lease lease() throws InterruptedException {
+        return new Lease(take(-1));
+    }
+
+    /**
+     * Take a started cluster from the pool, waiting up to the given time
+     * for one to be ready.
+     *
+     * @param timeout - how long to wait.
+     * @param unit - unit of the timeout.
+     * @return a lease on a started cluster.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws TimeoutException if no cluster was ready in time. The cause is
+     * the last error starting a cluster, if any.
+     * @throws IllegalStateException if the pool is closed, or no cluster
+     * could be started. The cause is the last error starting a cluster.
+     * @since 2.1.3-2
+     */
+    public Lease lease(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        MAC mac = take(Math.max(0, unit.toNanos(timeout)));
+        if (mac == null) {
+            TimeoutException e = new TimeoutException("No Mini Accumulo Cluster was ready within " + timeout + " " + unit);
+            e.initCause(lastFailure.get());
+            throw e;
+        }
+        return new Lease(mac);
+    }
+
+    /**
+     * Waits for a ready cluster, checking whether the pool was closed or gave
+     * up on starting clusters in between. A negative timeout waits forever.
+     * Returns null if the timeout elapsed.
+     */
+    private MAC take(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("MACPool is closed");
+            }
+            if (startFailures.get() >= MAX_START_ATTEMPTS && all.isEmpty()) {
+                throw new IllegalStateException("Could not start a pooled Mini Accumulo Cluster after "
+                        + MAX_START_ATTEMPTS + " attempts", lastFailure.get());
+            }
+            long waitNanos = TimeUnit.MILLISECONDS.toNanos(POLL_MS);
+            if (timeoutNanos >= 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                waitNanos = Math.min(waitNanos, remaining);
+            }
+            MAC mac = ready.poll(waitNanos, TimeUnit.NANOSECONDS);
+            if (mac != null) {
+                if (closed) {
+                    // close() stops it.
+                    throw new IllegalStateException("MACPool is closed");
+                }
+                return mac;
+            }
+        }
+    }
+
+    /**
+     * Stop every cluster in the pool, including leased ones. Threads waiting
+     * for a lease fail with an {@link IllegalStateException}.
+     *
+     * @since 2.1.3-2
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        background.shutdownNow();
+        List<MAC> toStop;
+        synchronized (all) {
+            toStop = new ArrayList<>(all);
+            all.clear();
+        }
+        for (MAC mac : toStop) {
+            stopQuietly(mac);
+        }
+        ready.clear();
+    }
+
+    private void startCluster() {
+        while (!closed && startFailures.get() < MAX_START_ATTEMPTS) {
+            MAC mac = null;
+            try {
+                mac = new MAC(configSupplier.get());
+                all.add(mac);
+                mac.start();
+                startFailures.set(0);
+                if (closed) {
+                    stopQuietly(mac);
+                } else {
+                    ready.add(mac);
+                }
+                return;
+            } catch (Exception e) {
+                lastFailure.set(e);
+                if (mac != null) {
+                    all.remove(mac);
+                    stopQuietly(mac);
+                }
+                if (startFailures.incrementAndGet() >= MAX_START_ATTEMPTS) {
+                    log.error("Could not start a pooled Mini Accumulo Cluster, giving up.", e);
+                    return;
+                }
+                log.error("Could not start a pooled Mini Accumulo Cluster, retrying.", e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void release(MAC mac) {
+        if (closed) {
+            return;
+        }
+        background.submit(() -> {
+            try {
+                mac.reset();
+                ready.add(mac);
+            } catch (Exception e) {
+                log.warn("Could not reset a pooled Mini Accumulo Cluster, replacing it.", e);
+                all.remove(mac);
+                stopQuietly(mac);
+                startCluster();
+            }
+        });
+    }
+
+    private static void stopQuietly(MAC mac) {
+        try {
+            mac.stop();
+        } catch (Exception e) {
+            log.warn("Error stopping pooled Mini Accumulo Cluster", e);
+        }
+    }
+
+    /**
+     * A cluster leased from a {@link MACPool}. Closing the lease hands the
+     * cluster back to the pool.
+     *
+     * @since 2.1.3-2
+     */
+    public class Lease implements AutoCloseable {
+        private final MAC mac;
+        private boolean returned = false;
+
+        private Lease(MAC mac) {
+            this.mac = mac;
+        }
+
+        /**
+         * Returns the leased cluster.
+         *
+         * @return the leased cluster.
+         * @since 2.1.3-2
+         */
+        public MAC getMAC() {
+            if (returned) {
+                throw new IllegalStateException("Lease was already returned to the pool");
+            }
+            return mac;
+        }
+
+        /**
+         * Return the cluster to the pool. It is reset in the background.
+         *
+         * @since 2.1.3-2
+         */
+        @Override
+        public synchronized void close() {
+            if (!returned) {
+                returned = true;
+                release(mac);
+            }
+        }
+    }
+}
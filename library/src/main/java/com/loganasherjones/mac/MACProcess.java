@@ -3,7 +3,11 @@ package com.loganasherjones.mac;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * A wrapper for a process which includes capture of stdout/stderr.
@@ -19,14 +23,33 @@ public class MACProcess {
 
     private final String processName;
     private final Process process;
-    private final LogWriter errLogWriter;
-    private final LogWriter outLogWriter;
+    private final LogPump.Stream stdout;
+    private final LogPump.Stream stderr;
+    private final OutputTail tail;
+    private final List<File> logFiles;
+    private final LongSupplier firstOutputNanos;
+    private final long spawnNanos = System.nanoTime();
 
-    MACProcess(String processName, Process process, LogWriter errLogWriter, LogWriter outLogWriter) {
+    /**
+     * The log streams and tail are null when the process's output is
+     * redirected straight to the log files by the OS.
+     */
+    MACProcess(
+            String processName,
+            Process process,
+            LogPump.Stream stdout,
+            LogPump.Stream stderr,
+            OutputTail tail,
+            List<File> logFiles,
+            LongSupplier firstOutputNanos
+    ) {
         this.processName = processName;
         this.process = process;
-        this.errLogWriter = errLogWriter;
-        this.outLogWriter = outLogWriter;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.tail = tail;
+        this.logFiles = logFiles;
+        this.firstOutputNanos = firstOutputNanos;
     }
 
     /**
@@ -37,10 +60,7 @@ public class MACProcess {
      * @since 1.10.4
      */
     public void stop() throws IOException, InterruptedException {
-        log.debug("Flushing stderr for {}", processName);
-        this.errLogWriter.flush();
-        log.debug("Flushing stdout for {}", processName);
-        this.outLogWriter.flush();
+        flushOutput();
 
         log.debug("Stopping {} process", processName);
         process.destroy();
@@ -49,6 +69,84 @@ public class MACProcess {
         log.debug("Process {} stopped (return={})", processName, retCode);
     }
 
+    /**
+     * Stop the wrapped process, killing it forcibly if it has not exited
+     * within the timeout, and flush stdout/stderr to their outputs.
+     *
+     * @param timeoutMs - Milliseconds to wait for the process to exit.
+     * @return true if the process exited before the timeout.
+     * @throws IOException - If something goes wrong writing output.
+     * @throws InterruptedException - If interrupted while waiting for process to die.
+     * @since 2.1.3-2
+     */
+    public boolean stop(long timeoutMs) throws IOException, InterruptedException {
+        flushOutput();
+
+        log.debug("Stopping {} process", processName);
+        process.destroy();
+        if (process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+            log.debug("Process {} stopped (return={})", processName, process.exitValue());
+            return true;
+        }
+
+        log.warn("Process {} did not stop within {}ms, killing it.", processName, timeoutMs);
+        process.destroyForcibly();
+        if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("Process {} did not exit after being killed.", processName);
+        }
+        return false;
+    }
+
+    private void flushOutput() throws IOException {
+        if (stderr != null) {
+            log.debug("Flushing stderr for {}", processName);
+            stderr.flush();
+        }
+        if (stdout != null) {
+            log.debug("Flushing stdout for {}", processName);
+            stdout.flush();
+        }
+    }
+
+    /**
+     * Waits until the output of an exited process has been copied to the
+     * log files and the tail, so {@link #tail(int)} includes its last
+     * lines. Returns straight away when the OS writes the output to the
+     * log files itself.
+     *
+     * @param timeoutMs - Milliseconds to wait for the output.
+     * @return true if all output was copied before the timeout.
+     * @throws InterruptedException - If interrupted while waiting.
+     * @since 2.1.3-2
+     */
+    public boolean awaitOutputDrained(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (LogPump.Stream stream : new LogPump.Stream[]{stdout, stderr}) {
+            if (stream == null) {
+                continue;
+            }
+            long remaining = Math.max(deadline - System.nanoTime(), 0);
+            if (!stream.awaitClosed(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forwards to {@link Process#waitFor(long, TimeUnit)}
+     *
+     * @see Process#waitFor(long, TimeUnit)
+     * @param timeout - the maximum time to wait
+     * @param unit - the unit of the timeout
+     * @return true if the process has exited
+     * @throws InterruptedException when interrupted while waiting
+     * @since 2.1.3-2
+     */
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return process.waitFor(timeout, unit);
+    }
+
     /**
      * Forwards to {@link Process#waitFor()}
      *
@@ -60,4 +158,102 @@ public class MACProcess {
     public int waitFor() throws InterruptedException {
         return process.waitFor();
     }
+
+    /**
+     * Forwards to {@link Process#isAlive()}
+     *
+     * @see Process#isAlive()
+     * @return true if the process has not exited yet
+     * @since 2.1.3-2
+     */
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Forwards to {@link Process#exitValue()}
+     *
+     * @see Process#exitValue()
+     * @return the return code of the process
+     * @throws IllegalThreadStateException if the process has not exited yet
+     * @since 2.1.3-2
+     */
+    public int exitValue() {
+        return process.exitValue();
+    }
+
+    /**
+     * Returns the last lines the process wrote to stdout and stderr.
+     * <p>
+     * Output copied through MAC is kept in memory, with stdout and stderr
+     * interleaved as they were written. When the OS writes the output
+     * straight to log files, the end of each file is read instead.
+     * </p>
+     *
+     * @param lines - maximum number of lines to return per stream.
+     * @return the last lines the process wrote.
+     * @since 2.1.3-2
+     */
+    public String tail(int lines) {
+        if (tail != null) {
+            return tail.tail(lines);
+        }
+        StringBuilder result = new StringBuilder();
+        for (File file : logFiles) {
+            result.append("==> ").append(file.getName()).append(" <==\n");
+            try {
+                result.append(OutputTail.tail(file, lines)).append('\n');
+            } catch (IOException e) {
+                result.append("Could not read ").append(file).append(": ").append(e.getMessage()).append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Forwards to {@link Process#pid()}
+     *
+     * @see Process#pid()
+     * @return the pid of the process, or -1 if it has none, such as an
+     * in-JVM process.
+     * @since 2.1.3-2
+     */
+    public long pid() {
+        try {
+            return process.pid();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which this process was spawned.
+     *
+     * @return when this process was spawned.
+     * @since 2.1.3-2
+     */
+    public long getSpawnNanos() {
+        return spawnNanos;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which this process first
+     * wrote to stdout or stderr, or -1 if it has not written anything yet.
+     *
+     * @return when this process first wrote output, or -1.
+     * @since 2.1.3-2
+     */
+    public long getFirstOutputNanos() {
+        return firstOutputNanos.getAsLong();
+    }
+
+    /**
+     * Returns the name this process was spawned with.
+     *
+     * @return the name this process was spawned with.
+     * @since 2.1.3-2
+     */
+    public String getProcessName() {
+        return processName;
+    }
 }
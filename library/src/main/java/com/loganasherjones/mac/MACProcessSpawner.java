@@ -3,12 +3,15 @@ package com.loganasherjones.mac;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +30,11 @@ public class MACProcessSpawner {
     private final ClasspathLoader classpathLoader;
     private final boolean logToFile;
     private final File logDirectory;
+    private final boolean inJvm;
+    private final ClassDataSharing classDataSharing;
+    private final File argFileDirectory;
+    private String argFileClasspath;
+    private File cachedArgFile;
 
     /**
      * Create a MACProcessSpawner.
@@ -36,9 +44,71 @@ public class MACProcessSpawner {
      * @param logDirectory if {@link #logToFile} is false ignored, otherwise logs will be written in this directory.
      */
     public MACProcessSpawner(ClasspathLoader classpathLoader, boolean logToFile, File logDirectory) {
+        this(classpathLoader, logToFile, logDirectory, false, null, logDirectory);
+    }
+
+    /**
+     * Create a MACProcessSpawner with every setting taken from the
+     * {@link MACConfig}.
+     *
+     * @param config the configuration of the cluster processes are spawned for.
+     * @since 2.1.3-2
+     */
+    public MACProcessSpawner(MACConfig config) {
+        this(
+                config.getClasspathLoader(),
+                config.shouldLogToFile(),
+                config.getLogDir(),
+                config.shouldRunInJvm(),
+                config.getClassDataSharingDirectory() == null
+                        ? null
+                        : new ClassDataSharing(config.getClassDataSharingDirectory()),
+                config.getConfDir()
+        );
+    }
+
+    private MACProcessSpawner(
+            ClasspathLoader classpathLoader,
+            boolean logToFile,
+            File logDirectory,
+            boolean inJvm,
+            ClassDataSharing classDataSharing,
+            File argFileDirectory
+    ) {
         this.classpathLoader = classpathLoader;
         this.logToFile = logToFile;
         this.logDirectory = logDirectory;
+        this.inJvm = inJvm;
+        this.classDataSharing = classDataSharing;
+        this.argFileDirectory = argFileDirectory;
+    }
+
+    /**
+     * Returns the classpath for spawned processes. Caching is left to the
+     * {@link ClasspathLoader}, which knows when its classpath changes.
+     *
+     * @return the classpath for spawned processes.
+     * @throws IOException - if the classpath can't be loaded correctly.
+     * @since 2.1.3-2
+     */
+    public String getClasspath() throws IOException {
+        return classpathLoader.getClasspath();
+    }
+
+    /**
+     * Returns a java launcher argument file holding the -cp flag, so the
+     * (very long) classpath is not copied into every command line.
+     */
+    private synchronized File getClasspathArgFile(String classpath) throws IOException {
+        if (cachedArgFile == null || !classpath.equals(argFileClasspath)) {
+            argFileDirectory.mkdirs();
+            File argFile = new File(argFileDirectory, "classpath-" + Integer.toHexString(classpath.hashCode()) + ".args");
+            String quoted = "\"" + classpath.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+            Files.write(argFile.toPath(), Arrays.asList("-cp", quoted), StandardCharsets.UTF_8);
+            cachedArgFile = argFile;
+            argFileClasspath = classpath;
+        }
+        return cachedArgFile;
     }
 
     /**
@@ -86,11 +156,30 @@ public class MACProcessSpawner {
             Map<String, String> jvmProperties,
             Map<String, String> environment
     ) throws IOException {
-        String classpath = classpathLoader.getClasspath();
-        List<String> argList = new ArrayList<>(Arrays.asList(javaBin, "-Dproc=" + processName, "-cp", classpath));
+        String classpath = getClasspath();
+        if (inJvm && !InJvmProcess.canRun(className)) {
+            log.warn("{} calls System.exit, which cannot be trapped in this JVM. Forking it instead.", processName);
+        } else if (inJvm) {
+            log.info("Starting {} in-JVM", processName);
+            Process process = InJvmProcess.start(processName, className, additionalArgs, classpath, jvmProperties, environment);
+            return wrapProcess(processName, process);
+        }
+
+        ClassDataSharing.ArchivePlan archivePlan = ClassDataSharing.ArchivePlan.NONE;
+        if (classDataSharing != null) {
+            archivePlan = classDataSharing.plan(className, classpath);
+            if (archivePlan.getClasspath() != null) {
+                classpath = archivePlan.getClasspath();
+            }
+        }
 
+        File argFile = getClasspathArgFile(classpath);
+        List<String> argList = new ArrayList<>(Arrays.asList(javaBin, "-Dproc=" + processName, "@" + argFile.getAbsolutePath()));
+        for (Map.Entry<String, String> entry : archivePlan.getJvmFlags().entrySet()) {
+            argList.add(toJvmArg(entry));
+        }
         for (Map.Entry<String, String> entry : jvmProperties.entrySet()) {
-            argList.add(entry.getKey() + "=" + entry.getValue());
+            argList.add(toJvmArg(entry));
         }
 
         argList.add(className);
@@ -103,38 +192,58 @@ public class MACProcessSpawner {
         for (Map.Entry<String, String> entry : environment.entrySet()) {
             builder.environment().put(entry.getKey(), entry.getValue());
         }
+        if (logToFile) {
+            // Let the OS write the logs instead of copying them through this JVM.
+            builder.redirectOutput(ProcessBuilder.Redirect.to(getStdOutFile(processName)));
+            builder.redirectError(ProcessBuilder.Redirect.to(getStdErrFile(processName)));
+        }
 
-        Process process = builder.start();
-        LogWriter stderrWriter = spawnStdErrWriter(processName, process);
-        LogWriter stdoutWriter = spawnStdOutWriter(processName, process);
-        return new MACProcess(processName, process, stderrWriter, stdoutWriter);
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            archivePlan.processExited();
+            throw e;
+        }
+        process.onExit().thenRun(archivePlan::processExited);
+        if (logToFile) {
+            List<File> logFiles = Arrays.asList(getStdOutFile(processName), getStdErrFile(processName));
+            LogPump.FileWatch watch = LogPump.getShared().watch(logFiles, process::isAlive);
+            return new MACProcess(processName, process, null, null, null, logFiles, watch::getFirstOutputNanos);
+        }
+        return wrapProcess(processName, process);
     }
 
-    private LogWriter spawnStdErrWriter(String processName, Process process) throws IOException {
-        OutputStream stderrStream;
-        if (logToFile) {
-            File errLogFile = new File(logDirectory, processName + ".err");
-            stderrStream = Files.newOutputStream(errLogFile.toPath());
-        } else {
-            stderrStream = System.err;
+    /**
+     * JVM properties are rendered as key=value. A null value renders a
+     * flag that takes no value, such as -XX:+UseSerialGC.
+     */
+    private static String toJvmArg(Map.Entry<String, String> entry) {
+        if (entry.getValue() == null) {
+            return entry.getKey();
         }
-        LogWriter writer = new LogWriter(process.getErrorStream(), stderrStream);
-        writer.start();
-        return writer;
+        return entry.getKey() + "=" + entry.getValue();
     }
 
-    private LogWriter spawnStdOutWriter(String processName, Process process) throws IOException {
-        OutputStream stdoutStream;
+    private MACProcess wrapProcess(String processName, Process process) throws IOException {
+        LogPump pump = LogPump.getShared();
+        OutputStream stdoutStream = System.out;
+        OutputStream stderrStream = System.err;
         if (logToFile) {
-            File outLogFile = new File(logDirectory, processName + ".out");
-            stdoutStream = Files.newOutputStream(outLogFile.toPath());
-        } else {
-            stdoutStream = System.out;
+            stdoutStream = new BufferedOutputStream(Files.newOutputStream(getStdOutFile(processName).toPath()));
+            stderrStream = new BufferedOutputStream(Files.newOutputStream(getStdErrFile(processName).toPath()));
         }
-        LogWriter writer = new LogWriter(process.getInputStream(), stdoutStream);
-        writer.start();
-        return writer;
+        OutputTail tail = new OutputTail();
+        LogPump.Stream stdout = pump.register(processName + ".out", process.getInputStream(), stdoutStream, process::isAlive, tail);
+        LogPump.Stream stderr = pump.register(processName + ".err", process.getErrorStream(), stderrStream, process::isAlive, tail);
+        return new MACProcess(processName, process, stdout, stderr, tail, Collections.emptyList(), tail::getFirstWriteNanos);
     }
 
+    private File getStdOutFile(String processName) {
+        return new File(logDirectory, processName + ".out");
+    }
 
+    private File getStdErrFile(String processName) {
+        return new File(logDirectory, processName + ".err");
+    }
 }
@@ -0,0 +1,357 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Divides a total memory budget across the processes of a cluster.
+ * <p>
+ * Every tablet server gets four shares, and the manager, the gc, the
+ * zookeeper process and the short-lived init processes get one share
+ * each. A share is split into a maximum heap, metaspace and direct memory,
+ * with the rest left for thread stacks, the code cache and other native
+ * memory the JVM uses. With native maps, a quarter of each tablet server's
+ * share is kept off the heap for its in-memory map. If the native library
+ * turns out to be unavailable, {@link #withoutNativeMaps()} gives that
+ * quarter back to the tablet server heaps.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class MemoryBudget {
+    private static final Logger log = LoggerFactory.getLogger(MemoryBudget.class);
+    private static final long MB = 1024 * 1024;
+    private static final int TSERVER_SHARES = 4;
+    private static final Path CGROUP_V2_LIMIT = Paths.get("/sys/fs/cgroup/memory.max");
+    private static final Path CGROUP_V1_LIMIT = Paths.get("/sys/fs/cgroup/memory/memory.limit_in_bytes");
+
+    /**
+     * The smallest heap any process is given.
+     *
+     * @since 2.1.3-2
+     */
+    public static final long MIN_HEAP = 64 * MB;
+
+    /**
+     * The smallest heap a tablet server is given. Accumulo refuses to start
+     * a tablet server whose in-memory map, default data, index and summary
+     * caches (10M, 25M and 10M) and mutation queue (5% of the heap) do not
+     * fit in its heap, which already happens at {@link #MIN_HEAP}.
+     *
+     * @since 2.1.3-2
+     */
+    public static final long TSERVER_MIN_HEAP = 256 * MB;
+
+    private final long total;
+    private final int numTservers;
+    private final boolean spawnsZooKeeper;
+    private final Share tabletServer;
+    private final Share manager;
+    private final Share garbageCollector;
+    private final Share zooKeeper;
+    private final Share init;
+    private final long nativeMapsMemory;
+
+    /**
+     * Divide a budget across the processes of a cluster.
+     *
+     * @param total - the memory, in bytes, every process together may use.
+     * @param numTservers - the number of tablet servers.
+     * @param zooKeeper - whether a zookeeper process is spawned.
+     * @param nativeMaps - whether to keep memory off the heap for native maps.
+     * @throws IllegalArgumentException if a process would get less than
+     * {@link #MIN_HEAP} of heap, or a tablet server less than
+     * {@link #TSERVER_MIN_HEAP}.
+     * @since 2.1.3-2
+     */
+    public MemoryBudget(long total, int numTservers, boolean zooKeeper, boolean nativeMaps) {
+        this.total = total;
+        this.numTservers = numTservers;
+        this.spawnsZooKeeper = zooKeeper;
+        int shares = TSERVER_SHARES * numTservers + 3 + (zooKeeper ? 1 : 0);
+        long share = total / shares;
+        long tserverShare = share * TSERVER_SHARES;
+        this.nativeMapsMemory = nativeMaps ? tserverShare / 4 : 0;
+        this.tabletServer = split("tablet server", tserverShare - nativeMapsMemory, TSERVER_MIN_HEAP);
+        this.manager = split("manager", share, MIN_HEAP);
+        this.garbageCollector = split("gc", share, MIN_HEAP);
+        this.zooKeeper = zooKeeper ? split("zookeeper", share, MIN_HEAP) : null;
+        this.init = split("init", share, MIN_HEAP);
+    }
+
+    /**
+     * Returns the same budget with nothing kept off the heap for native
+     * maps, for when the native library is not available after all.
+     *
+     * @return a budget without native maps, or this one if it has none.
+     * @since 2.1.3-2
+     */
+    public MemoryBudget withoutNativeMaps() {
+        if (nativeMapsMemory == 0) {
+            return this;
+        }
+        return new MemoryBudget(total, numTservers, spawnsZooKeeper, false);
+    }
+
+    private Share split(String role, long bytes, long minHeap) {
+        long metaspace = Math.min(Math.max(bytes / 8, 128 * MB), 256 * MB);
+        long directMemory = Math.max(bytes / 16, 16 * MB);
+        long nativeOverhead = bytes / 8;
+        long heap = bytes - metaspace - directMemory - nativeOverhead;
+        if (heap < minHeap) {
+            throw new IllegalArgumentException("A memory budget of " + total / MB + " MB is too small. The "
+                    + role + " would get " + Math.max(heap, 0) / MB + " MB of heap, and needs at least "
+                    + minHeap / MB + " MB.");
+        }
+        return new Share(heap, metaspace, directMemory);
+    }
+
+    /**
+     * Returns the total budget.
+     *
+     * @return the total budget in bytes.
+     * @since 2.1.3-2
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the share of each tablet server.
+     *
+     * @return the share of each tablet server.
+     * @since 2.1.3-2
+     */
+    public Share getTabletServer() {
+        return tabletServer;
+    }
+
+    /**
+     * Returns the share of the manager.
+     *
+     * @return the share of the manager.
+     * @since 2.1.3-2
+     */
+    public Share getManager() {
+        return manager;
+    }
+
+    /**
+     * Returns the share of the gc.
+     *
+     * @return the share of the gc.
+     * @since 2.1.3-2
+     */
+    public Share getGarbageCollector() {
+        return garbageCollector;
+    }
+
+    /**
+     * Returns the share of the zookeeper process.
+     *
+     * @return the share of the zookeeper process, or null if none is spawned.
+     * @since 2.1.3-2
+     */
+    public Share getZooKeeper() {
+        return zooKeeper;
+    }
+
+    /**
+     * Returns the share of each init process.
+     *
+     * @return the share of each init process.
+     * @since 2.1.3-2
+     */
+    public Share getInit() {
+        return init;
+    }
+
+    /**
+     * Returns the size of a tablet server's in-memory map when it is kept on
+     * the heap. It is a quarter of the heap, which leaves room for accumulo's
+     * default block cache sizes.
+     *
+     * @return the in-memory map size in bytes.
+     * @since 2.1.3-2
+     */
+    public long getJavaMapsMemory() {
+        return tabletServer.getHeap() / 4;
+    }
+
+    /**
+     * Returns the memory kept off the heap for each tablet server's native
+     * in-memory map.
+     *
+     * @return the native map size in bytes, or 0 if none was kept.
+     * @since 2.1.3-2
+     */
+    public long getNativeMapsMemory() {
+        return nativeMapsMemory;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget{total=" + total / MB + "M, tserver=" + tabletServer + ", manager=" + manager
+                + ", gc=" + garbageCollector + ", zookeeper=" + zooKeeper + ", init=" + init
+                + ", nativeMaps=" + nativeMapsMemory / MB + "M}";
+    }
+
+    /**
+     * Returns the memory limit of the container this JVM runs in, from the
+     * cgroup v2 or v1 file system.
+     *
+     * @return the limit in bytes, or -1 if there is none.
+     * @since 2.1.3-2
+     */
+    public static long getContainerLimit() {
+        for (Path path : new Path[]{CGROUP_V2_LIMIT, CGROUP_V1_LIMIT}) {
+            if (!Files.isReadable(path)) {
+                continue;
+            }
+            try {
+                return parseLimit(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.debug("Could not read {}", path, e);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a cgroup memory limit. Version 2 writes {@code max} when there
+     * is no limit, version 1 a number close to {@link Long#MAX_VALUE}.
+     */
+    static long parseLimit(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equals("max")) {
+            return -1;
+        }
+        try {
+            long limit = Long.parseLong(trimmed);
+            return limit <= 0 || limit >= Long.MAX_VALUE / 2 ? -1 : limit;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Lowers a budget to fit in the container this JVM runs in. The
+     * cluster's processes share the container's limit with this JVM, so the
+     * heap of this JVM is left out.
+     *
+     * @param requested - the requested budget in bytes.
+     * @return the budget that fits in the container.
+     * @since 2.1.3-2
+     */
+    public static long fitToContainer(long requested) {
+        long limit = getContainerLimit();
+        if (limit <= 0) {
+            return requested;
+        }
+        long available = limit - Runtime.getRuntime().maxMemory();
+        if (requested > available) {
+            log.warn("Memory budget of {} MB does not fit in the container limit of {} MB, using {} MB.",
+                    requested / MB, limit / MB, Math.max(available, 0) / MB);
+            return Math.max(available, 0);
+        }
+        return requested;
+    }
+
+    /**
+     * The memory given to one process.
+     *
+     * @since 2.1.3-2
+     */
+    public static class Share {
+        private final long heap;
+        private final long metaspace;
+        private final long directMemory;
+
+        private Share(long heap, long metaspace, long directMemory) {
+            this.heap = heap;
+            this.metaspace = metaspace;
+            this.directMemory = directMemory;
+        }
+
+        /**
+         * Returns the maximum heap.
+         *
+         * @return the maximum heap in bytes.
+         * @since 2.1.3-2
+         */
+        public long getHeap() {
+            return heap;
+        }
+
+        /**
+         * Returns the maximum metaspace.
+         *
+         * @return the maximum metaspace in bytes.
+         * @since 2.1.3-2
+         */
+        public long getMetaspace() {
+            return metaspace;
+        }
+
+        /**
+         * Returns the maximum direct memory.
+         *
+         * @return the maximum direct memory in bytes.
+         * @since 2.1.3-2
+         */
+        public long getDirectMemory() {
+            return directMemory;
+        }
+
+        /**
+         * Adds the JVM flags for this share to a process's JVM properties.
+         * Flags that were already set are left alone.
+         *
+         * @param jvmProperties - the JVM properties of a process.
+         * @since 2.1.3-2
+         */
+        public void applyTo(Map<String, String> jvmProperties) {
+            boolean heapSet = jvmProperties.keySet().stream().anyMatch(key -> key.startsWith("-Xmx"));
+            if (!heapSet) {
+                jvmProperties.put("-Xmx" + heap / MB + "m", null);
+            }
+            jvmProperties.putIfAbsent("-XX:MaxMetaspaceSize", metaspace / MB + "m");
+            jvmProperties.putIfAbsent("-XX:MaxDirectMemorySize", directMemory / MB + "m");
+        }
+
+        /**
+         * Replaces the JVM flags another share added with
+         * {@link #applyTo(Map)} with the ones for this share. Flags that
+         * were set to something else are left alone.
+         *
+         * @param jvmProperties - the JVM properties of a process.
+         * @param previous - the share that was applied before.
+         * @since 2.1.3-2
+         */
+        public void replace(Map<String, String> jvmProperties, Share previous) {
+            String previousHeap = "-Xmx" + previous.heap / MB + "m";
+            if (jvmProperties.containsKey(previousHeap)) {
+                jvmProperties.remove(previousHeap);
+                jvmProperties.put("-Xmx" + heap / MB + "m", null);
+            }
+            jvmProperties.replace("-XX:MaxMetaspaceSize", previous.metaspace / MB + "m", metaspace / MB + "m");
+            jvmProperties.replace("-XX:MaxDirectMemorySize", previous.directMemory / MB + "m", directMemory / MB + "m");
+        }
+
+        @Override
+        public String toString() {
+            return "{heap=" + heap / MB + "M, metaspace=" + metaspace / MB + "M, direct=" + directMemory / MB + "M}";
+        }
+    }
+}
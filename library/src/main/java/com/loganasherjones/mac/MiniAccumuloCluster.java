@@ -0,0 +1,75 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.function.Supplier;
+
+/**
+ * Runs a JUnit 5 test class against a shared Mini Accumulo Cluster.
+ * <p>
+ * Every test class annotated with the same {@link #value()} and
+ * {@link #config()} shares a single cluster for the whole test run. Test
+ * methods, constructors and lifecycle methods can declare parameters of
+ * type {@link MAC}, {@link org.apache.accumulo.core.client.AccumuloClient}
+ * (a root client) and {@link MACNamespace} (a namespace only the current
+ * test uses, so tests can run in parallel).
+ * </p>
+ *
+ * <pre>{@code
+ * @MiniAccumuloCluster
+ * public class MyTest {
+ *     @Test
+ *     public void myTest(AccumuloClient client, MACNamespace namespace) throws Exception {
+ *         client.tableOperations().create(namespace.table("mytable"));
+ *         // Do whatever with the client
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author loganasherjones
+ * @see MACExtension
+ * @since 2.1.3-2
+ */
+@Documented
+@Inherited
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(MACExtension.class)
+public @interface MiniAccumuloCluster {
+
+    /**
+     * Name of the cluster. Test classes using the same name and
+     * configuration share a cluster.
+     *
+     * @return the name of the cluster.
+     * @since 2.1.3-2
+     */
+    String value() default "default";
+
+    /**
+     * Creates the configuration for the cluster. Must have a public no-arg
+     * constructor.
+     *
+     * @return the class that creates the configuration for the cluster.
+     * @since 2.1.3-2
+     */
+    Class<? extends Supplier<MACConfig>> config() default DefaultConfig.class;
+
+    /**
+     * Supplies the default {@link MACConfig}.
+     *
+     * @since 2.1.3-2
+     */
+    class DefaultConfig implements Supplier<MACConfig> {
+        @Override
+        public MACConfig get() {
+            return new MACConfig.MACConfigBuilder().build();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Finds or builds accumulo's native in-memory map library.
+ * <p>
+ * The library is cached in a directory. If it is not there, the
+ * {@code accumulo-native} source tarball for the running accumulo version
+ * is taken from the same directory, or downloaded from maven central and
+ * checked against the published checksum, and built with {@code tar} and
+ * {@code make}. That needs a JDK and a C++
+ * compiler, and only works on Linux. When the library cannot be found or
+ * built, a warning is logged and the tablet servers keep their in-memory
+ * maps on the Java heap.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class NativeMaps {
+    private static final Logger log = LoggerFactory.getLogger(NativeMaps.class);
+    private static final String REPOSITORY = "https://repo1.maven.org/maven2";
+    private static final long BUILD_TIMEOUT_MINUTES = 10;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 60_000;
+    // Published checksum extensions and their digest algorithms, strongest first.
+    private static final String[][] CHECKSUMS = {{"sha512", "SHA-512"}, {"sha1", "SHA-1"}};
+
+    private final File directory;
+
+    /**
+     * Create a native map library resolver.
+     *
+     * @param directory - where the library and its source are cached.
+     * @since 2.1.3-2
+     */
+    public NativeMaps(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the file the library is cached in.
+     *
+     * @return the cached library.
+     * @since 2.1.3-2
+     */
+    public File getLibrary() {
+        return new File(directory, System.mapLibraryName("accumulo"));
+    }
+
+    /**
+     * Returns the cached library, building it first if needed.
+     *
+     * @return the library, or null if it is not available on this platform.
+     * @since 2.1.3-2
+     */
+    public File resolve() {
+        // Clusters starting concurrently in this JVM should only build once.
+        synchronized (NativeMaps.class) {
+            File library = getLibrary();
+            if (library.isFile()) {
+                log.debug("Using native maps library {}", library);
+                return library;
+            }
+            if (!System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+                log.warn("Native maps can only be built on Linux, using Java in-memory maps.");
+                return null;
+            }
+            try {
+                build(library);
+                return library;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not build the native maps library, using Java in-memory maps.", e);
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted building the native maps library, using Java in-memory maps.");
+                return null;
+            }
+        }
+    }
+
+    private void build(File library) throws IOException, InterruptedException {
+        directory.mkdirs();
+        File tarball = sourceTarball();
+        Path staging = Files.createTempDirectory(directory.toPath(), "build-");
+        try {
+            log.info("Building native maps library from {}", tarball);
+            run(staging.toFile(), "tar", "-xzf", tarball.getAbsolutePath());
+            Path sourceDirectory = find(staging, "Makefile").getParent();
+            run(sourceDirectory.toFile(), "make");
+
+            // Move it into place atomically, in case another JVM shares the directory.
+            Path built = find(sourceDirectory, library.getName());
+            Path copy = staging.resolve(library.getName() + ".tmp");
+            Files.copy(built, copy);
+            Files.move(copy, library.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Built native maps library {}", library);
+        } finally {
+            deleteTree(staging);
+        }
+    }
+
+    private File sourceTarball() throws IOException {
+        String name = "accumulo-native-" + Constants.VERSION + ".tar.gz";
+        File tarball = new File(directory, name);
+        if (tarball.isFile()) {
+            return tarball;
+        }
+
+        String location = REPOSITORY + "/org/apache/accumulo/accumulo-native/" + Constants.VERSION + "/" + name;
+        String algorithm = null;
+        String expected = null;
+        for (String[] checksum : CHECKSUMS) {
+            try {
+                expected = readChecksum(new URL(location + "." + checksum[0]));
+                algorithm = checksum[1];
+                break;
+            } catch (FileNotFoundException e) {
+                log.debug("No {} checksum published for {}", checksum[0], location);
+            }
+        }
+        if (expected == null) {
+            throw new IOException("No checksum is published for " + location);
+        }
+
+        log.info("Downloading {}", location);
+        // Download to a file of our own, in case another JVM shares the directory.
+        Path staging = Files.createTempFile(directory.toPath(), name, ".tmp");
+        try {
+            MessageDigest digest = newDigest(algorithm);
+            try (InputStream in = new DigestInputStream(open(new URL(location)), digest)) {
+                Files.copy(in, staging, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String actual = toHex(digest.digest());
+            if (!actual.equals(expected)) {
+                throw new IOException(algorithm + " checksum of " + location + " is " + actual + ", expected " + expected);
+            }
+            Files.move(staging, tarball.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+        return tarball;
+    }
+
+    private static InputStream open(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        return connection.getInputStream();
+    }
+
+    /**
+     * Checksum files hold the hex digest, sometimes followed by the file name.
+     */
+    private static String readChecksum(URL url) throws IOException {
+        try (InputStream in = open(url)) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            return content.split("\\s+")[0].toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(algorithm + " is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    private static void run(File workingDirectory, String... command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(workingDirectory)
+                .redirectErrorStream(true);
+        // The Makefile finds the JNI headers through JAVA_HOME.
+        builder.environment().put("JAVA_HOME", System.getProperty("java.home"));
+        File output = new File(workingDirectory, "mac-build.log");
+        builder.redirectOutput(output);
+
+        Process process = builder.start();
+        if (!process.waitFor(BUILD_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException(String.join(" ", command) + " did not finish within " + BUILD_TIMEOUT_MINUTES + " minutes");
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException(String.join(" ", command) + " exited with " + process.exitValue() + ":\n"
+                    + new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Path find(Path root, String fileName) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            Optional<Path> match = paths
+                    .filter(p -> p.getFileName().toString().equals(fileName))
+                    .findFirst();
+            if (!match.isPresent()) {
+                throw new IOException("Could not find " + fileName + " in " + root);
+            }
+            return match.get();
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
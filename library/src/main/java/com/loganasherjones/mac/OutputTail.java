@@ -0,0 +1,163 @@
+package com.loganasherjones.mac;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the last bytes written to it in a fixed-size ring buffer so the
+ * recent output of a process can be shown without reading log files.
+ * <p>
+ * Nothing is allocated while writing. Lines are only split out when
+ * {@link #tail(int)} is called.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class OutputTail extends OutputStream {
+    /**
+     * Default number of bytes kept per process.
+     *
+     * @since 2.1.3-2
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] buffer;
+    private int writePos = 0;
+    private boolean full = false;
+    private volatile long firstWriteNanos = -1;
+
+    /**
+     * Create a tail keeping the last {@link #DEFAULT_CAPACITY} bytes.
+     *
+     * @since 2.1.3-2
+     */
+    public OutputTail() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a tail keeping the last {@code capacity} bytes.
+     *
+     * @param capacity - number of bytes to keep.
+     * @since 2.1.3-2
+     */
+    public OutputTail(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (firstWriteNanos == -1 && len > 0) {
+            firstWriteNanos = System.nanoTime();
+        }
+        if (len >= buffer.length) {
+            System.arraycopy(b, off + len - buffer.length, buffer, 0, buffer.length);
+            writePos = 0;
+            full = true;
+            return;
+        }
+        int first = Math.min(len, buffer.length - writePos);
+        System.arraycopy(b, off, buffer, writePos, first);
+        System.arraycopy(b, off + first, buffer, 0, len - first);
+        if (writePos + len >= buffer.length) {
+            full = true;
+        }
+        writePos = (writePos + len) % buffer.length;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} of the first write, or -1 if
+     * nothing was written yet.
+     *
+     * @return when the first write happened, or -1.
+     * @since 2.1.3-2
+     */
+    public long getFirstWriteNanos() {
+        return firstWriteNanos;
+    }
+
+    /**
+     * Returns up to the last {@code lines} lines written.
+     *
+     * @param lines - maximum number of lines to return.
+     * @return the last lines written, separated by newlines.
+     * @since 2.1.3-2
+     */
+    public String tail(int lines) {
+        byte[] data;
+        boolean truncated;
+        synchronized (this) {
+            truncated = full;
+            if (full) {
+                data = new byte[buffer.length];
+                System.arraycopy(buffer, writePos, data, 0, buffer.length - writePos);
+                System.arraycopy(buffer, 0, data, buffer.length - writePos, writePos);
+            } else {
+                data = new byte[writePos];
+                System.arraycopy(buffer, 0, data, 0, writePos);
+            }
+        }
+        return lastLines(data, lines, truncated);
+    }
+
+    /**
+     * Returns up to the last {@code lines} lines of a file, reading at most
+     * {@link #DEFAULT_CAPACITY} bytes from its end.
+     *
+     * @param file - the file to read.
+     * @param lines - maximum number of lines to return.
+     * @return the last lines of the file, or an empty string if it does not exist.
+     * @throws IOException if the file cannot be read.
+     * @since 2.1.3-2
+     */
+    public static String tail(File file, int lines) throws IOException {
+        if (!file.isFile()) {
+            return "";
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            int length = (int) Math.min(raf.length(), DEFAULT_CAPACITY);
+            byte[] data = new byte[length];
+            raf.seek(raf.length() - length);
+            raf.readFully(data);
+            return lastLines(data, lines, raf.length() > length);
+        }
+    }
+
+    private static String lastLines(byte[] data, int lines, boolean truncated) {
+        int end = data.length;
+        if (end > 0 && data[end - 1] == '\n') {
+            end--;
+        }
+        int start = end;
+        int found = 0;
+        while (start > 0 && found < lines) {
+            if (data[start - 1] == '\n') {
+                found++;
+                if (found == lines) {
+                    break;
+                }
+            }
+            start--;
+        }
+        if (start == 0 && truncated) {
+            // The first line was cut off by the capacity, so drop it.
+            while (start < end && data[start] != '\n') {
+                start++;
+            }
+            start = Math.min(start + 1, end);
+        }
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+}
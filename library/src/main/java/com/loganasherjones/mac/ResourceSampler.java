@@ -0,0 +1,216 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the resource usage of spawned processes from {@code /proc}.
+ * <p>
+ * A single thread reads, for every registered process, the resident set
+ * size and thread count from {@code /proc/<pid>/status}, CPU time from
+ * {@code /proc/<pid>/stat}, the number of entries in {@code /proc/<pid>/fd}
+ * and storage I/O from {@code /proc/<pid>/io}. Processes are dropped once
+ * they exit. Only Linux is supported, and in-JVM processes are not
+ * sampled since they have no pid of their own.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class ResourceSampler implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ResourceSampler.class);
+    private static final Path PROC = Paths.get("/proc");
+    // USER_HZ, which is 100 on every mainstream Linux platform.
+    private static final long MILLIS_PER_CLOCK_TICK = 10;
+
+    private final Map<MACProcess, ResourceSamples> samples = new ConcurrentHashMap<>();
+    private final List<ResourceSamples> finished = new ArrayList<>();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Start sampling every {@code intervalMs} milliseconds.
+     *
+     * @param name - used to name the sampling thread.
+     * @param intervalMs - time between samples.
+     * @since 2.1.3-2
+     */
+    public ResourceSampler(String name, long intervalMs) {
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-resource-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::sampleAll, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Determine if resource sampling works on this platform.
+     *
+     * @return true if {@code /proc} is available.
+     * @since 2.1.3-2
+     */
+    public static boolean isSupported() {
+        return Files.isDirectory(PROC.resolve("self"));
+    }
+
+    /**
+     * Start sampling a process. Processes without a pid are ignored.
+     *
+     * @param process - the process to sample.
+     * @since 2.1.3-2
+     */
+    public void register(MACProcess process) {
+        if (process.pid() < 0) {
+            log.debug("Not sampling {} since it has no pid.", process.getProcessName());
+            return;
+        }
+        samples.put(process, new ResourceSamples(process.getProcessName()));
+    }
+
+    /**
+     * Returns the samples of a process.
+     *
+     * @param processName - full name of the process.
+     * @return the samples, or null if the process was never sampled.
+     * @since 2.1.3-2
+     */
+    public ResourceSamples getSamples(String processName) {
+        for (ResourceSamples series : getAllSamples()) {
+            if (series.getProcessName().equals(processName)) {
+                return series;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the samples of every process, including ones that exited.
+     *
+     * @return the samples of every process.
+     * @since 2.1.3-2
+     */
+    public List<ResourceSamples> getAllSamples() {
+        List<ResourceSamples> result;
+        synchronized (finished) {
+            result = new ArrayList<>(finished);
+        }
+        result.addAll(samples.values());
+        return result;
+    }
+
+    /**
+     * Write every sample to a CSV file.
+     *
+     * @param file - the file to write.
+     * @throws IOException if the file cannot be written.
+     * @since 2.1.3-2
+     */
+    public void writeCsv(File file) throws IOException {
+        StringBuilder out = new StringBuilder("process,time_ms,rss_bytes,cpu_ms,threads,fds,read_bytes,write_bytes\n");
+        for (ResourceSamples series : getAllSamples()) {
+            series.appendCsv(out);
+        }
+        Files.write(file.toPath(), out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stop sampling.
+     *
+     * @since 2.1.3-2
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void sampleAll() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<MACProcess, ResourceSamples> entry : samples.entrySet()) {
+            MACProcess process = entry.getKey();
+            try {
+                sample(process.pid(), now, entry.getValue());
+            } catch (IOException | RuntimeException e) {
+                if (process.isAlive()) {
+                    log.debug("Could not sample {}", process.getProcessName(), e);
+                    continue;
+                }
+            }
+            if (!process.isAlive()) {
+                samples.remove(process);
+                synchronized (finished) {
+                    finished.add(entry.getValue());
+                }
+            }
+        }
+    }
+
+    private static void sample(long pid, long now, ResourceSamples series) throws IOException {
+        Path dir = PROC.resolve(Long.toString(pid));
+
+        long rss = -1;
+        int threads = -1;
+        for (String line : Files.readAllLines(dir.resolve("status"), StandardCharsets.UTF_8)) {
+            if (line.startsWith("VmRSS:")) {
+                rss = parseKilobytes(line) * 1024;
+            } else if (line.startsWith("Threads:")) {
+                threads = Integer.parseInt(line.substring("Threads:".length()).trim());
+            }
+        }
+
+        long cpu = parseCpuMillis(new String(Files.readAllBytes(dir.resolve("stat")), StandardCharsets.UTF_8));
+
+        String[] fds = dir.resolve("fd").toFile().list();
+
+        long read = -1;
+        long write = -1;
+        try {
+            for (String line : Files.readAllLines(dir.resolve("io"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("read_bytes:")) {
+                    read = Long.parseLong(line.substring("read_bytes:".length()).trim());
+                } else if (line.startsWith("write_bytes:")) {
+                    write = Long.parseLong(line.substring("write_bytes:".length()).trim());
+                }
+            }
+        } catch (IOException e) {
+            // Not readable on some kernels and containers.
+        }
+
+        series.add(now, rss, cpu, threads, fds == null ? -1 : fds.length, read, write);
+    }
+
+    /**
+     * Returns the user and system CPU time from a {@code /proc/<pid>/stat}
+     * line. The command name may contain spaces and parentheses, so fields
+     * are counted from the last closing parenthesis. utime and stime are
+     * fields 14 and 15.
+     */
+    static long parseCpuMillis(String stat) {
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+        return (Long.parseLong(fields[11]) + Long.parseLong(fields[12])) * MILLIS_PER_CLOCK_TICK;
+    }
+
+    /**
+     * Parses a {@code /proc/<pid>/status} line such as {@code VmRSS: 1024 kB}.
+     */
+    static long parseKilobytes(String line) {
+        String value = line.substring(line.indexOf(':') + 1).trim();
+        return Long.parseLong(value.split("\\s+")[0]);
+    }
+}
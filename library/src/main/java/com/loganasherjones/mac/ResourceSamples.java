@@ -0,0 +1,224 @@
+package com.loganasherjones.mac;
+
+import java.util.Arrays;
+
+/**
+ * A time series of resource usage samples for one process.
+ * <p>
+ * Samples are stored in primitive arrays, one per metric, which grow up
+ * to a fixed capacity. Once full, every other sample is dropped and only
+ * every other new sample is kept from then on, so a long-lived cluster
+ * keeps a bounded, evenly spaced series covering its whole life. The peak
+ * resident set size is tracked over every sample, including dropped ones.
+ * A value of -1 means the metric could not be read.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class ResourceSamples {
+    private static final int INITIAL_CAPACITY = 64;
+    static final int MAX_CAPACITY = 4096;
+
+    private final String processName;
+    private final int maxCapacity;
+    private long[] timeMillis = new long[INITIAL_CAPACITY];
+    private long[] rssBytes = new long[INITIAL_CAPACITY];
+    private long[] cpuMillis = new long[INITIAL_CAPACITY];
+    private int[] threads = new int[INITIAL_CAPACITY];
+    private int[] fileDescriptors = new int[INITIAL_CAPACITY];
+    private long[] readBytes = new long[INITIAL_CAPACITY];
+    private long[] writeBytes = new long[INITIAL_CAPACITY];
+    private int size = 0;
+    private long offered = 0;
+    private long stride = 1;
+    private long peakRssBytes = -1;
+
+    ResourceSamples(String processName) {
+        this(processName, MAX_CAPACITY);
+    }
+
+    ResourceSamples(String processName, int maxCapacity) {
+        this.processName = processName;
+        this.maxCapacity = maxCapacity;
+    }
+
+    synchronized void add(long time, long rss, long cpu, int threadCount, int fds, long read, long write) {
+        peakRssBytes = Math.max(peakRssBytes, rss);
+        long index = offered++;
+        if (index % stride != 0) {
+            return;
+        }
+        if (size == maxCapacity) {
+            downsample();
+            if (index % stride != 0) {
+                return;
+            }
+        }
+        if (size == timeMillis.length) {
+            int capacity = Math.min(size * 2, maxCapacity);
+            timeMillis = Arrays.copyOf(timeMillis, capacity);
+            rssBytes = Arrays.copyOf(rssBytes, capacity);
+            cpuMillis = Arrays.copyOf(cpuMillis, capacity);
+            threads = Arrays.copyOf(threads, capacity);
+            fileDescriptors = Arrays.copyOf(fileDescriptors, capacity);
+            readBytes = Arrays.copyOf(readBytes, capacity);
+            writeBytes = Arrays.copyOf(writeBytes, capacity);
+        }
+        timeMillis[size] = time;
+        rssBytes[size] = rss;
+        cpuMillis[size] = cpu;
+        threads[size] = threadCount;
+        fileDescriptors[size] = fds;
+        readBytes[size] = read;
+        writeBytes[size] = write;
+        size++;
+    }
+
+    /**
+     * Keeps every other sample and halves the rate new samples are kept at.
+     */
+    private void downsample() {
+        int kept = (size + 1) / 2;
+        for (int i = 1; i < kept; i++) {
+            timeMillis[i] = timeMillis[2 * i];
+            rssBytes[i] = rssBytes[2 * i];
+            cpuMillis[i] = cpuMillis[2 * i];
+            threads[i] = threads[2 * i];
+            fileDescriptors[i] = fileDescriptors[2 * i];
+            readBytes[i] = readBytes[2 * i];
+            writeBytes[i] = writeBytes[2 * i];
+        }
+        size = kept;
+        stride *= 2;
+    }
+
+    /**
+     * Returns the name of the sampled process.
+     *
+     * @return the name of the sampled process.
+     * @since 2.1.3-2
+     */
+    public String getProcessName() {
+        return processName;
+    }
+
+    /**
+     * Returns the number of samples kept, which stops growing at a fixed
+     * capacity.
+     *
+     * @return the number of samples.
+     * @since 2.1.3-2
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns when a sample was taken, in milliseconds since the epoch.
+     *
+     * @param i - index of the sample.
+     * @return when the sample was taken.
+     * @since 2.1.3-2
+     */
+    public synchronized long getTimeMillis(int i) {
+        return timeMillis[checkIndex(i)];
+    }
+
+    /**
+     * Returns the resident set size of the process.
+     *
+     * @param i - index of the sample.
+     * @return the resident set size in bytes.
+     * @since 2.1.3-2
+     */
+    public synchronized long getRssBytes(int i) {
+        return rssBytes[checkIndex(i)];
+    }
+
+    /**
+     * Returns the total user and system CPU time used by the process so far.
+     *
+     * @param i - index of the sample.
+     * @return the CPU time in milliseconds.
+     * @since 2.1.3-2
+     */
+    public synchronized long getCpuMillis(int i) {
+        return cpuMillis[checkIndex(i)];
+    }
+
+    /**
+     * Returns the number of threads of the process.
+     *
+     * @param i - index of the sample.
+     * @return the number of threads.
+     * @since 2.1.3-2
+     */
+    public synchronized int getThreads(int i) {
+        return threads[checkIndex(i)];
+    }
+
+    /**
+     * Returns the number of open file descriptors of the process.
+     *
+     * @param i - index of the sample.
+     * @return the number of open file descriptors.
+     * @since 2.1.3-2
+     */
+    public synchronized int getFileDescriptors(int i) {
+        return fileDescriptors[checkIndex(i)];
+    }
+
+    /**
+     * Returns the bytes the process has read from storage so far.
+     *
+     * @param i - index of the sample.
+     * @return the bytes read from storage.
+     * @since 2.1.3-2
+     */
+    public synchronized long getReadBytes(int i) {
+        return readBytes[checkIndex(i)];
+    }
+
+    /**
+     * Returns the bytes the process has written to storage so far.
+     *
+     * @param i - index of the sample.
+     * @return the bytes written to storage.
+     * @since 2.1.3-2
+     */
+    public synchronized long getWriteBytes(int i) {
+        return writeBytes[checkIndex(i)];
+    }
+
+    /**
+     * Returns the largest resident set size seen, including in samples
+     * that were dropped.
+     *
+     * @return the largest resident set size in bytes, or -1 if there are no samples.
+     * @since 2.1.3-2
+     */
+    public synchronized long getPeakRssBytes() {
+        return peakRssBytes;
+    }
+
+    synchronized void appendCsv(StringBuilder out) {
+        for (int i = 0; i < size; i++) {
+            out.append(processName).append(',')
+                    .append(timeMillis[i]).append(',')
+                    .append(rssBytes[i]).append(',')
+                    .append(cpuMillis[i]).append(',')
+                    .append(threads[i]).append(',')
+                    .append(fileDescriptors[i]).append(',')
+                    .append(readBytes[i]).append(',')
+                    .append(writeBytes[i]).append('\n');
+        }
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Sample " + i + " out of " + size);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,183 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a set of named startup steps as a dependency graph.
+ * <p>
+ * Each step declares the steps it depends on. A step is started as soon
+ * as all of its dependencies have finished, so steps which do not depend
+ * on each other run at the same time. If any step fails, steps which have
+ * not started yet are skipped and the first failure is rethrown from
+ * {@link #run()}.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class StartupPipeline {
+    private static final Logger log = LoggerFactory.getLogger(StartupPipeline.class);
+
+    /**
+     * A single unit of work in the pipeline.
+     *
+     * @since 2.1.3-2
+     */
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * Perform the work for this step.
+         *
+         * @throws Exception if something goes wrong.
+         */
+        void run() throws Exception;
+    }
+
+    private final String name;
+    private final StartupReport report;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final Map<String, List<String>> dependencies = new LinkedHashMap<>();
+
+    /**
+     * Create an empty pipeline.
+     *
+     * @param name used to name the worker threads.
+     * @since 2.1.3-2
+     */
+    public StartupPipeline(String name) {
+        this(name, null);
+    }
+
+    /**
+     * Create an empty pipeline which records each step as a phase.
+     *
+     * @param name used to name the worker threads.
+     * @param report where step timings are recorded, may be null.
+     * @since 2.1.3-2
+     */
+    public StartupPipeline(String name, StartupReport report) {
+        this.name = name;
+        this.report = report;
+    }
+
+    /**
+     * Add a step to the pipeline. Dependencies must already have been
+     * added, which also guarantees the graph has no cycles.
+     *
+     * @param stepName - unique name of the step.
+     * @param step - the work to do.
+     * @param dependsOn - names of steps that must finish before this one starts.
+     * @return this
+     * @since 2.1.3-2
+     */
+    public StartupPipeline addStep(String stepName, Step step, String... dependsOn) {
+        if (steps.containsKey(stepName)) {
+            throw new IllegalArgumentException("Step " + stepName + " was already added.");
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException("Step " + stepName + " depends on unknown step " + dependency);
+            }
+        }
+        steps.put(stepName, step);
+        dependencies.put(stepName, Arrays.asList(dependsOn));
+        return this;
+    }
+
+    /**
+     * Returns the names of the steps in the order they were added.
+     *
+     * @return the names of the steps in the order they were added.
+     * @since 2.1.3-2
+     */
+    public List<String> getStepNames() {
+        return new ArrayList<>(steps.keySet());
+    }
+
+    /**
+     * Run every step, honoring dependencies, and wait for all of them to
+     * finish.
+     *
+     * @throws Exception the first exception thrown by any step.
+     * @since 2.1.3-2
+     */
+    public void run() throws Exception {
+        if (steps.isEmpty()) {
+            return;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(steps.size(), r -> {
+            Thread t = new Thread(r, name + "-startup-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Step> entry : steps.entrySet()) {
+                String stepName = entry.getKey();
+                Step step = entry.getValue();
+                CompletableFuture<?>[] deps = dependencies.get(stepName)
+                        .stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                CompletableFuture<Void> future = CompletableFuture
+                        .allOf(deps)
+                        .thenRunAsync(() -> runStep(stepName, step), executor);
+                futures.put(stepName, future);
+            }
+
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runStep(String stepName, Step step) {
+        log.debug("Running startup step {}", stepName);
+        if (report != null) {
+            report.phaseStarted(stepName);
+        }
+        try {
+            step.run();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+        if (report != null) {
+            report.phaseFinished(stepName);
+        }
+        log.debug("Finished startup step {}", stepName);
+    }
+
+    private Exception unwrap(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof Exception) {
+            return (Exception) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeException(t);
+    }
+}
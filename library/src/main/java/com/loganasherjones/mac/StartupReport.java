@@ -0,0 +1,237 @@
+package com.loganasherjones.mac;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of everything {@link MAC#start()} did.
+ * <p>
+ * Every time is measured with {@link System#nanoTime()} and reported
+ * relative to the moment {@link MAC#start()} was called. Phases may
+ * overlap, since independent startup steps run at the same time.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class StartupReport {
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final List<MACProcess> processes = Collections.synchronizedList(new ArrayList<>());
+    private volatile long endNanos = -1;
+
+    /**
+     * Record that a phase started.
+     *
+     * @param name - name of the phase.
+     * @since 2.1.3-2
+     */
+    public synchronized void phaseStarted(String name) {
+        phases.put(name, new Phase(name, System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Record that a phase finished.
+     *
+     * @param name - name of the phase, which must have been started.
+     * @since 2.1.3-2
+     */
+    public synchronized void phaseFinished(String name) {
+        Phase phase = phases.get(name);
+        if (phase != null) {
+            phase.durationNanos = System.nanoTime() - startNanos - phase.startNanos;
+        }
+    }
+
+    /**
+     * Record that a process was spawned, so its spawn and first output
+     * times are part of the report.
+     *
+     * @param process - the spawned process.
+     * @since 2.1.3-2
+     */
+    public void processSpawned(MACProcess process) {
+        processes.add(process);
+    }
+
+    /**
+     * Record that startup finished.
+     *
+     * @since 2.1.3-2
+     */
+    public void finished() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the total startup time, or the time so far if startup has not
+     * finished.
+     *
+     * @return the total startup time in nanoseconds.
+     * @since 2.1.3-2
+     */
+    public long getTotalNanos() {
+        long end = endNanos == -1 ? System.nanoTime() : endNanos;
+        return end - startNanos;
+    }
+
+    /**
+     * Returns every recorded phase in the order it started.
+     *
+     * @return every recorded phase.
+     * @since 2.1.3-2
+     */
+    public synchronized List<Phase> getPhases() {
+        List<Phase> result = new ArrayList<>(phases.values());
+        result.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        return result;
+    }
+
+    /**
+     * Returns the timings of every spawned process in the order they were
+     * spawned.
+     *
+     * @return the timings of every spawned process.
+     * @since 2.1.3-2
+     */
+    public List<ProcessTiming> getProcesses() {
+        List<ProcessTiming> result = new ArrayList<>();
+        synchronized (processes) {
+            for (MACProcess process : processes) {
+                long firstOutput = process.getFirstOutputNanos();
+                result.add(new ProcessTiming(
+                        process.getProcessName(),
+                        process.getSpawnNanos() - startNanos,
+                        firstOutput == -1 ? -1 : firstOutput - startNanos
+                ));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a human readable summary of the report.
+     *
+     * @return a human readable summary of the report.
+     * @since 2.1.3-2
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("Mini Accumulo Cluster started in %.1fms%n", millis(getTotalNanos())));
+        result.append(String.format("  %-32s %10s %10s%n", "phase", "start(ms)", "took(ms)"));
+        for (Phase phase : getPhases()) {
+            result.append(String.format("  %-32s %10.1f %10s%n", phase.getName(), millis(phase.startNanos),
+                    phase.durationNanos == -1 ? "-" : String.format("%.1f", millis(phase.durationNanos))));
+        }
+        result.append(String.format("  %-32s %10s %10s%n", "process", "spawn(ms)", "output(ms)"));
+        for (ProcessTiming process : getProcesses()) {
+            result.append(String.format("  %-32s %10.1f %10s%n", process.getName(), millis(process.spawnNanos),
+                    process.firstOutputNanos == -1 ? "-" : String.format("%.1f", millis(process.firstOutputNanos))));
+        }
+        return result.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * A named part of startup.
+     *
+     * @since 2.1.3-2
+     */
+    public static class Phase {
+        private final String name;
+        private final long startNanos;
+        private volatile long durationNanos = -1;
+
+        private Phase(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Returns the name of the phase.
+         *
+         * @return the name of the phase.
+         * @since 2.1.3-2
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns when the phase started, relative to the start of startup.
+         *
+         * @return when the phase started in nanoseconds.
+         * @since 2.1.3-2
+         */
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        /**
+         * Returns how long the phase took, or -1 if it did not finish.
+         *
+         * @return how long the phase took in nanoseconds, or -1.
+         * @since 2.1.3-2
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+    }
+
+    /**
+     * When a process was spawned and first wrote output.
+     *
+     * @since 2.1.3-2
+     */
+    public static class ProcessTiming {
+        private final String name;
+        private final long spawnNanos;
+        private final long firstOutputNanos;
+
+        private ProcessTiming(String name, long spawnNanos, long firstOutputNanos) {
+            this.name = name;
+            this.spawnNanos = spawnNanos;
+            this.firstOutputNanos = firstOutputNanos;
+        }
+
+        /**
+         * Returns the name of the process.
+         *
+         * @return the name of the process.
+         * @since 2.1.3-2
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns when the process was spawned, relative to the start of
+         * startup.
+         *
+         * @return when the process was spawned in nanoseconds.
+         * @since 2.1.3-2
+         */
+        public long getSpawnNanos() {
+            return spawnNanos;
+        }
+
+        /**
+         * Returns when the process first wrote output, relative to the
+         * start of startup, or -1 if it has not written anything.
+         *
+         * @return when the process first wrote output in nanoseconds, or -1.
+         * @since 2.1.3-2
+         */
+        public long getFirstOutputNanos() {
+            return firstOutputNanos;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.Constants;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A thin wrapper around a {@link ZooKeeper} client used by MAC to look at
+ * the state accumulo keeps in zookeeper.
+ * <p>
+ * The main feature is {@link #await(String, Condition, long)} which
+ * re-evaluates a condition every time a watch fires rather than sleeping
+ * between checks.
+ * </p>
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class ZooKeeperConnection implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ZooKeeperConnection.class);
+
+    /**
+     * A check against zookeeper. Implementations should pass the given
+     * watcher to every read they make so that any change wakes up
+     * {@link #await(String, Condition, long)}.
+     *
+     * @since 2.1.3-2
+     */
+    @FunctionalInterface
+    public interface Condition {
+        /**
+         * Evaluate the condition.
+         *
+         * @param watcher - watcher to register on every read.
+         * @return true once the condition is satisfied.
+         * @throws KeeperException if zookeeper returns an unexpected error.
+         * @throws InterruptedException if interrupted.
+         */
+        boolean check(Watcher watcher) throws KeeperException, InterruptedException;
+    }
+
+    private final ZooKeeper zooKeeper;
+    private final Object changeMonitor = new Object();
+    private long changeCount = 0;
+
+    private ZooKeeperConnection(ZooKeeper zooKeeper) {
+        this.zooKeeper = zooKeeper;
+    }
+
+    /**
+     * Connect to zookeeper and wait for the session to be established.
+     *
+     * @param connectString - zookeeper connection string.
+     * @param sessionTimeoutMs - zookeeper session timeout.
+     * @param connectTimeoutMs - time to wait for the session to be established.
+     * @return a connected {@link ZooKeeperConnection}
+     * @throws IOException if the client cannot be created or does not connect in time.
+     * @throws InterruptedException if interrupted while connecting.
+     * @since 2.1.3-2
+     */
+    public static ZooKeeperConnection connect(String connectString, int sessionTimeoutMs, long connectTimeoutMs)
+            throws IOException, InterruptedException {
+        CountDownLatch connected = new CountDownLatch(1);
+        ZooKeeper zk = new ZooKeeper(connectString, sessionTimeoutMs, event -> {
+            if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                connected.countDown();
+            }
+        });
+        if (!connected.await(connectTimeoutMs, TimeUnit.MILLISECONDS)) {
+            zk.close();
+            throw new IOException("Could not connect to zookeeper at " + connectString
+                    + " within " + connectTimeoutMs + "ms");
+        }
+        return new ZooKeeperConnection(zk);
+    }
+
+    /**
+     * Returns the wrapped zookeeper client.
+     *
+     * @return the wrapped zookeeper client.
+     * @since 2.1.3-2
+     */
+    public ZooKeeper getZooKeeper() {
+        return zooKeeper;
+    }
+
+    /**
+     * Look up the accumulo instance ID for the given instance name.
+     *
+     * @param instanceName - accumulo instance name.
+     * @param watcher - watcher to register, may be null.
+     * @return the instance ID, or null if the instance does not exist yet.
+     * @throws KeeperException if zookeeper returns an unexpected error.
+     * @throws InterruptedException if interrupted.
+     * @since 2.1.3-2
+     */
+    public String getInstanceId(String instanceName, Watcher watcher) throws KeeperException, InterruptedException {
+        String path = Constants.ZROOT + Constants.ZINSTANCES + "/" + instanceName;
+        if (zooKeeper.exists(path, watcher) == null) {
+            return null;
+        }
+        return new String(zooKeeper.getData(path, watcher, null), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the zookeeper path for the root of the given accumulo instance.
+     *
+     * @param instanceId - accumulo instance ID.
+     * @return the zookeeper path for the root of the given accumulo instance.
+     * @since 2.1.3-2
+     */
+    public static String instancePath(String instanceId) {
+        return Constants.ZROOT + "/" + instanceId;
+    }
+
+    /**
+     * Block until the condition is true, re-checking it each time one of
+     * the watches it registered fires.
+     *
+     * @param description - what is being waited on, used in logs and errors.
+     * @param condition - the condition to wait for.
+     * @param deadlineNanos - {@link System#nanoTime()} value to give up at.
+     * @throws TimeoutException if the deadline passes first.
+     * @throws KeeperException if zookeeper returns an unexpected error.
+     * @throws InterruptedException if interrupted.
+     * @since 2.1.3-2
+     */
+    public void await(String description, Condition condition, long deadlineNanos)
+            throws TimeoutException, KeeperException, InterruptedException {
+        Watcher watcher = this::onChange;
+        while (true) {
+            long observed;
+            synchronized (changeMonitor) {
+                observed = changeCount;
+            }
+
+            if (condition.check(watcher)) {
+                log.debug("Condition satisfied: {}", description);
+                return;
+            }
+
+            synchronized (changeMonitor) {
+                while (changeCount == observed) {
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                    if (remainingMs <= 0) {
+                        throw new TimeoutException("Timed out waiting for " + description);
+                    }
+                    changeMonitor.wait(remainingMs);
+                }
+            }
+        }
+    }
+
+    private void onChange(WatchedEvent event) {
+        log.trace("Zookeeper event {}", event);
+        synchronized (changeMonitor) {
+            changeCount++;
+            changeMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Close the underlying zookeeper client.
+     *
+     * @throws InterruptedException if interrupted while closing.
+     * @since 2.1.3-2
+     */
+    @Override
+    public void close() throws InterruptedException {
+        zooKeeper.close();
+    }
+}
@@ -0,0 +1,98 @@
+package com.loganasherjones.mac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends the zookeeper {@code ruok} four letter word and classifies the
+ * answer.
+ * <p>
+ * Expected to be used internally. Not a safe API to depend on.
+ * </p>
+ *
+ * @author loganasherjones
+ * @since 2.1.3-2
+ */
+public class ZooKeeperProbe {
+    private static final Logger log = LoggerFactory.getLogger(ZooKeeperProbe.class);
+
+    /**
+     * The result of a single probe.
+     *
+     * @since 2.1.3-2
+     */
+    public enum Status {
+        /** Nothing is listening on the port yet. */
+        NOT_BOUND,
+        /** Something accepted the connection, but did not answer imok. */
+        NOT_SERVING,
+        /** Zookeeper answered imok. */
+        OK
+    }
+
+    private final String host;
+    private final int port;
+    private final int socketTimeoutMs;
+
+    /**
+     * Create a probe for the given zookeeper.
+     *
+     * @param host - zookeeper host.
+     * @param port - zookeeper client port.
+     * @param socketTimeoutMs - connect and read timeout for a single probe.
+     * @since 2.1.3-2
+     */
+    public ZooKeeperProbe(String host, int port, int socketTimeoutMs) {
+        this.host = host;
+        this.port = port;
+        this.socketTimeoutMs = socketTimeoutMs;
+    }
+
+    /**
+     * Probe zookeeper once.
+     *
+     * @return the {@link Status} of zookeeper.
+     * @since 2.1.3-2
+     */
+    public Status probe() {
+        try (Socket s = new Socket()) {
+            s.setReuseAddress(true);
+            try {
+                s.connect(new InetSocketAddress(host, port), socketTimeoutMs);
+            } catch (IOException e) {
+                log.trace("Zookeeper port is not bound: {}", e.getMessage());
+                return Status.NOT_BOUND;
+            }
+
+            s.setSoTimeout(socketTimeoutMs);
+            OutputStream out = s.getOutputStream();
+            out.write("ruok".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = s.getInputStream();
+            byte[] buffer = new byte[4];
+            int read = 0;
+            while (read < buffer.length) {
+                int n = in.read(buffer, read, buffer.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            if (read == 4 && new String(buffer, StandardCharsets.US_ASCII).equals("imok")) {
+                return Status.OK;
+            }
+            return Status.NOT_SERVING;
+        } catch (IOException e) {
+            log.trace("Zookeeper is not serving: {}", e.getMessage());
+            return Status.NOT_SERVING;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClassDataSharingTest {
+
+    @Test
+    public void testDirectoriesAreKeptOutOfTheArchivedPrefix(@TempDir Path temp) throws Exception {
+        Path resources = Files.createDirectories(temp.resolve("resources"));
+        Files.write(resources.resolve("resource.txt"), new byte[]{1});
+        Path classes = Files.createDirectories(temp.resolve("classes"));
+        Files.write(classes.resolve("Example.class"), new byte[]{1});
+        Path jar = Files.write(temp.resolve("library.jar"), new byte[]{1});
+        File cache = temp.resolve("cds").toFile();
+        String classpath = String.join(File.pathSeparator, resources.toString(), classes.toString(), jar.toString());
+
+        ClassDataSharing.ArchivePlan plan = new ClassDataSharing(cache).plan(Hello.class.getName(), classpath);
+        try {
+            String[] entries = plan.getClasspath().split(File.pathSeparator);
+            assertEquals(3, entries.length);
+            assertEquals(cache.getAbsolutePath(), new File(entries[0]).getParent());
+            assertTrue(entries[0].endsWith(".jar"));
+            assertEquals(jar.toString(), entries[1]);
+            assertEquals(resources.toString(), entries[2]);
+            assertTrue(plan.getJvmFlags().containsKey("-XX:ArchiveClassesAtExit"));
+        } finally {
+            plan.processExited();
+        }
+    }
+
+    @Test
+    public void testSecondSpawnUsesArchiveWithDefaultLoader(@TempDir Path temp) throws Exception {
+        File cache = temp.resolve("cds").toFile();
+        MACConfig config = new MACConfig.MACConfigBuilder()
+                .withBaseDirectory(temp.resolve("mac").toFile())
+                .withClassDataSharing(cache)
+                .build();
+        MACProcessSpawner spawner = new MACProcessSpawner(config);
+
+        MACProcess first = spawner.spawnProcess("hello", Hello.class.getName(), Collections.emptyList(), Collections.emptyMap());
+        assertTrue(first.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, first.exitValue(), first.tail(20));
+
+        // The archive is published once the first process has exited.
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!hasArchive(cache) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        ClassDataSharing.ArchivePlan plan = new ClassDataSharing(cache)
+                .plan(Hello.class.getName(), spawner.getClasspath());
+        assertTrue(plan.getJvmFlags().containsKey("-XX:SharedArchiveFile"), plan.getJvmFlags().toString());
+
+        MACProcess second = spawner.spawnProcess("hello", Hello.class.getName(), Collections.emptyList(),
+                Collections.singletonMap("-Xshare:on", null));
+        assertTrue(second.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, second.exitValue(), second.tail(20));
+    }
+
+    private static boolean hasArchive(File cache) {
+        String[] names = cache.list();
+        if (names == null) {
+            return false;
+        }
+        for (String name : names) {
+            if (name.endsWith(".jsa")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Hello {
+        public static void main(String[] args) {
+            System.out.println("hello");
+        }
+    }
+}
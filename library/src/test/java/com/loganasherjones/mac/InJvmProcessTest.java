@@ -0,0 +1,120 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class InJvmProcessTest {
+    private static final String RELEASE_PROPERTY = "mac.test.release";
+    private static final String SCOPED_PROPERTY = "mac.test.scoped";
+    private static final String SET_PROPERTY = "mac.test.set";
+
+    @Test
+    public void testExitCodeIsCaptured() throws Exception {
+        assumeTrue(InJvmProcess.canTrapExits());
+        InJvmProcess process = start("exits", Exits.class);
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(3, process.exitValue());
+    }
+
+    @Test
+    public void testDestroy() throws Exception {
+        InJvmProcess process = start("sleeps", Sleeps.class);
+        assertTrue(process.isAlive());
+        assertTrue(process.destroy(30, TimeUnit.SECONDS));
+        assertFalse(process.isAlive());
+        assertEquals(143, process.exitValue());
+    }
+
+    @Test
+    public void testDestroyKeepsStuckProcessAlive() throws Exception {
+        InJvmProcess process = start("stuck", IgnoresInterrupts.class);
+        try {
+            assertFalse(process.destroy(500, TimeUnit.MILLISECONDS));
+            assertTrue(process.isAlive());
+        } finally {
+            System.setProperty(RELEASE_PROPERTY, "true");
+        }
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        System.clearProperty(RELEASE_PROPERTY);
+    }
+
+    @Test
+    public void testPropertiesStayInTheirProcess() throws Exception {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        InJvmProcess process = start("properties", PrintsProperties.class,
+                Collections.singletonMap("-D" + SCOPED_PROPERTY, "scoped"));
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals("scoped", reader.readLine());
+            assertEquals("set", reader.readLine());
+        }
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue());
+        assertNull(System.getProperty(SCOPED_PROPERTY));
+        assertNull(System.getProperty(SET_PROPERTY));
+        assertSame(out, System.out);
+        assertSame(err, System.err);
+    }
+
+    private static InJvmProcess start(String name, Class<?> mainClass) throws Exception {
+        return start(name, mainClass, Collections.emptyMap());
+    }
+
+    private static InJvmProcess start(String name, Class<?> mainClass, Map<String, String> jvmProperties) throws Exception {
+        return InJvmProcess.start(
+                name,
+                mainClass.getName(),
+                Collections.emptyList(),
+                System.getProperty("java.class.path"),
+                jvmProperties,
+                Collections.emptyMap()
+        );
+    }
+
+    public static class Exits {
+        public static void main(String[] args) {
+            System.exit(3);
+        }
+    }
+
+    public static class Sleeps {
+        public static void main(String[] args) throws InterruptedException {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(10));
+        }
+    }
+
+    public static class PrintsProperties {
+        public static void main(String[] args) {
+            System.setProperty(SET_PROPERTY, "set");
+            System.out.println(System.getProperty(SCOPED_PROPERTY));
+            System.out.println(System.getProperty(SET_PROPERTY));
+        }
+    }
+
+    public static class IgnoresInterrupts {
+        public static void main(String[] args) {
+            while (System.getProperty(RELEASE_PROPERTY) == null) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // Keep going, like a server that swallows interrupts.
+                }
+            }
+        }
+    }
+}
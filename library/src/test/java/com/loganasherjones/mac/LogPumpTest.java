@@ -0,0 +1,28 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogPumpTest {
+
+    @Test
+    public void testAwaitClosedDrainsExitedSource() throws Exception {
+        byte[] output = "first\nException in thread \"main\"".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputTail tail = new OutputTail();
+
+        LogPump.Stream stream = LogPump.getShared()
+                .register("exited", new ByteArrayInputStream(output), out, () -> false, tail);
+
+        assertTrue(stream.awaitClosed(10, TimeUnit.SECONDS));
+        assertEquals("first\nException in thread \"main\"\n", out.toString(StandardCharsets.UTF_8.name()));
+        assertTrue(tail.tail(1).contains("Exception in thread"));
+    }
+}
@@ -0,0 +1,28 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MiniAccumuloCluster
+public class MACExtensionTest {
+    private final MAC mac;
+
+    public MACExtensionTest(MAC mac) {
+        this.mac = mac;
+    }
+
+    @Test
+    public void testSharedCluster(MAC mac) {
+        assertSame(this.mac, mac);
+    }
+
+    @Test
+    public void testNamespace(AccumuloClient client, MACNamespace namespace) throws Exception {
+        assertTrue(client.namespaceOperations().exists(namespace.getName()));
+        client.tableOperations().create(namespace.table("table"));
+        assertTrue(client.tableOperations().exists(namespace.table("table")));
+    }
+}
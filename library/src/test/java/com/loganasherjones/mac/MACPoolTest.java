@@ -0,0 +1,54 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MACPoolTest {
+
+    @Test
+    public void testLeaseFailsOnceStartupKeepsFailing() {
+        try (MACPool pool = new MACPool(1, () -> {
+            throw new IllegalArgumentException("bad config");
+        })) {
+            IllegalStateException e = assertThrows(IllegalStateException.class, pool::lease);
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            assertEquals("bad config", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testCloseWakesWaitingLeases() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        MACPool pool = new MACPool(1, () -> {
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("interrupted");
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MACPool.Lease> lease = executor.submit(() -> pool.lease());
+            assertThrows(TimeoutException.class, () -> lease.get(500, TimeUnit.MILLISECONDS));
+            pool.close();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> lease.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertTrue(e.getCause().getMessage().contains("closed"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,7 +1,28 @@
 package com.loganasherjones.mac;
 
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.admin.CompactionConfig;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class MACTest {
     @Test
     public void testStart() throws Exception {
@@ -21,4 +42,90 @@ public class MACTest {
             cluster.stop();
         }
     }
+
+    @Test
+    public void testReset() throws Exception {
+        MAC cluster = new MAC(new MACConfig.MACConfigBuilder().build());
+        try {
+            cluster.start();
+            try (AccumuloClient client = cluster.getRootClient()) {
+                client.namespaceOperations().create("ns");
+                client.tableOperations().create("ns.table");
+                client.tableOperations().create("table");
+                client.securityOperations().createLocalUser("user", new PasswordToken("password"));
+                client.instanceOperations().setProperty("table.split.threshold", "10M");
+
+                cluster.reset();
+
+                assertFalse(client.namespaceOperations().exists("ns"));
+                assertFalse(client.tableOperations().exists("ns.table"));
+                assertFalse(client.tableOperations().exists("table"));
+                assertFalse(client.securityOperations().listLocalUsers().contains("user"));
+                assertNotEquals("10M", client.instanceOperations().getSystemConfiguration()
+                        .get("table.split.threshold"));
+            }
+        } finally {
+            cluster.stop();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        MAC cluster = new MAC(new MACConfig.MACConfigBuilder().withMetrics().build());
+        try {
+            cluster.start();
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (cluster.getMetrics().sum("jvm.threads.live", "value") == 0
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(250);
+            }
+            assertTrue(cluster.getMetrics().sum("jvm.threads.live", "value") > 0);
+        } finally {
+            cluster.stop();
+        }
+    }
+
+    @Test
+    public void testFastTimersAndAwaits() throws Exception {
+        MAC cluster = new MAC(new MACConfig.MACConfigBuilder().withFastTimers().build());
+        try {
+            cluster.start();
+            try (AccumuloClient client = cluster.getRootClient()) {
+                client.tableOperations().create("table");
+                try (BatchWriter writer = client.createBatchWriter("table")) {
+                    Mutation mutation = new Mutation("row");
+                    mutation.put("cf", "cq", "value");
+                    writer.addMutation(mutation);
+                }
+                client.tableOperations().flush("table", null, null, true);
+                List<File> flushed = tableFiles(client, "table");
+                assertFalse(flushed.isEmpty());
+
+                client.tableOperations().compact("table", new CompactionConfig().setWait(false));
+                cluster.awaitCompactionsDrained(1, TimeUnit.MINUTES);
+                assertFalse(tableFiles(client, "table").containsAll(flushed));
+
+                cluster.awaitGcCycle(1, TimeUnit.MINUTES);
+                for (File file : flushed) {
+                    assertFalse(file.exists(), file + " was not deleted");
+                }
+            }
+        } finally {
+            cluster.stop();
+        }
+    }
+
+    private static List<File> tableFiles(AccumuloClient client, String table) throws Exception {
+        String tableId = client.tableOperations().tableIdMap().get(table);
+        List<File> files = new ArrayList<>();
+        try (Scanner scanner = client.createScanner("accumulo.metadata", Authorizations.EMPTY)) {
+            // Every tablet of the table has a row between "<id>;" and "<id><".
+            scanner.setRange(new Range(tableId + ";", true, tableId + "<", true));
+            scanner.fetchColumnFamily("file");
+            for (Map.Entry<Key, Value> entry : scanner) {
+                files.add(new File(URI.create(entry.getKey().getColumnQualifierData().toString())));
+            }
+        }
+        return files;
+    }
 }
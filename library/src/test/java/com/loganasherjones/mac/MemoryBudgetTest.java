@@ -0,0 +1,103 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MemoryBudgetTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void testSharesFitInBudget() {
+        long total = 4096 * MB;
+        MemoryBudget budget = new MemoryBudget(total, 2, true, false);
+        long used = 2 * size(budget.getTabletServer())
+                + size(budget.getManager())
+                + size(budget.getGarbageCollector())
+                + size(budget.getZooKeeper())
+                + size(budget.getInit());
+        assertTrue(used < total);
+        assertTrue(budget.getTabletServer().getHeap() > budget.getManager().getHeap());
+        assertEquals(budget.getTabletServer().getHeap() / 4, budget.getJavaMapsMemory());
+        assertEquals(0, budget.getNativeMapsMemory());
+    }
+
+    @Test
+    public void testNativeMapsAreKeptOffHeap() {
+        MemoryBudget onHeap = new MemoryBudget(4096 * MB, 2, false, false);
+        MemoryBudget offHeap = new MemoryBudget(4096 * MB, 2, false, true);
+        assertNull(offHeap.getZooKeeper());
+        assertTrue(offHeap.getNativeMapsMemory() > 0);
+        assertTrue(offHeap.getTabletServer().getHeap() < onHeap.getTabletServer().getHeap());
+    }
+
+    @Test
+    public void testUnusedNativeMapsGoBackToTheHeap() {
+        MemoryBudget onHeap = new MemoryBudget(4096 * MB, 2, false, false);
+        MemoryBudget offHeap = new MemoryBudget(4096 * MB, 2, false, true);
+        MemoryBudget resplit = offHeap.withoutNativeMaps();
+        assertEquals(0, resplit.getNativeMapsMemory());
+        assertEquals(onHeap.getTabletServer().getHeap(), resplit.getTabletServer().getHeap());
+        assertEquals(onHeap.getJavaMapsMemory(), resplit.getJavaMapsMemory());
+
+        Map<String, String> jvmProperties = new HashMap<>();
+        jvmProperties.put("-XX:MaxDirectMemorySize", "1g");
+        offHeap.getTabletServer().applyTo(jvmProperties);
+        resplit.getTabletServer().replace(jvmProperties, offHeap.getTabletServer());
+        Map<String, String> expected = new HashMap<>();
+        expected.put("-XX:MaxDirectMemorySize", "1g");
+        onHeap.getTabletServer().applyTo(expected);
+        assertEquals(expected, jvmProperties);
+    }
+
+    @Test
+    public void testTooSmallBudget() {
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget(512 * MB, 4, true, false));
+    }
+
+    @Test
+    public void testTabletServersPassAccumuloMemoryCheck() {
+        // Accumulo checks the map, its default caches and the mutation queue
+        // against the heap the JVM reports, which leaves out a survivor space.
+        long caches = (10 + 25 + 10) * MB;
+        for (long total = 256 * MB; total <= 4096 * MB; total += 16 * MB) {
+            MemoryBudget budget;
+            try {
+                budget = new MemoryBudget(total, 1, true, false);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            long heap = budget.getTabletServer().getHeap();
+            assertTrue(heap >= MemoryBudget.TSERVER_MIN_HEAP);
+            assertTrue(budget.getJavaMapsMemory() + caches + heap / 20 <= heap * 9 / 10, budget.toString());
+        }
+    }
+
+    @Test
+    public void testApplyKeepsExistingFlags() {
+        Map<String, String> jvmProperties = new HashMap<>();
+        jvmProperties.put("-Xmx2g", null);
+        new MemoryBudget(4096 * MB, 1, true, false).getManager().applyTo(jvmProperties);
+        assertFalse(jvmProperties.keySet().stream().anyMatch(key -> key.startsWith("-Xmx") && !key.equals("-Xmx2g")));
+        assertTrue(jvmProperties.containsKey("-XX:MaxMetaspaceSize"));
+        assertTrue(jvmProperties.containsKey("-XX:MaxDirectMemorySize"));
+    }
+
+    @Test
+    public void testParseLimit() {
+        assertEquals(-1, MemoryBudget.parseLimit("max\n"));
+        assertEquals(-1, MemoryBudget.parseLimit("9223372036854771712\n"));
+        assertEquals(2147483648L, MemoryBudget.parseLimit("2147483648\n"));
+    }
+
+    private static long size(MemoryBudget.Share share) {
+        return share.getHeap() + share.getMetaspace() + share.getDirectMemory();
+    }
+}
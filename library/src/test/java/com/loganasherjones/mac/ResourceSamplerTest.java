@@ -0,0 +1,34 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ResourceSamplerTest {
+
+    @Test
+    public void testParseCpuMillisWithSpacesAndParenthesesInComm() {
+        String stat = "4242 (java (mac) tserver) S 1 4242 4242 0 -1 4194560 120 0 0 0 "
+                + "1500 250 0 0 20 0 57 0 1234 5000000000 40000 18446744073709551615 1 1 0 0 0 0 0 0 0 0 0 0 17 3 0 0 0 0 0\n";
+        assertEquals((1500 + 250) * 10, ResourceSampler.parseCpuMillis(stat));
+    }
+
+    @Test
+    public void testParseKilobytes() {
+        assertEquals(123456, ResourceSampler.parseKilobytes("VmRSS:\t  123456 kB"));
+        assertEquals(0, ResourceSampler.parseKilobytes("VmRSS: 0 kB"));
+    }
+
+    @Test
+    public void testSamplesAreDownsampledWhenFull() {
+        ResourceSamples samples = new ResourceSamples("tserver", 8);
+        for (int i = 0; i < 100; i++) {
+            samples.add(i, i == 3 ? 1000 : i, i, 1, 1, i, i);
+        }
+        assertEquals(7, samples.size());
+        assertEquals(0, samples.getTimeMillis(0));
+        assertEquals(16, samples.getTimeMillis(1));
+        assertEquals(96, samples.getTimeMillis(6));
+        assertEquals(1000, samples.getPeakRssBytes());
+    }
+}
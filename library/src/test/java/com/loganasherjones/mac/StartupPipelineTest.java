@@ -0,0 +1,79 @@
+package com.loganasherjones.mac;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StartupPipelineTest {
+
+    @Test
+    public void testDependenciesRunFirst() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        new StartupPipeline("test")
+                .addStep("a", () -> order.add("a"))
+                .addStep("b", () -> order.add("b"), "a")
+                .addStep("c", () -> order.add("c"), "b")
+                .run();
+        assertEquals(List.of("a", "b", "c"), order);
+    }
+
+    @Test
+    public void testIndependentStepsRunConcurrently() throws Exception {
+        // Both steps wait on each other, so this only finishes if they overlap.
+        CountDownLatch latch = new CountDownLatch(2);
+        StartupPipeline.Step step = () -> {
+            latch.countDown();
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        };
+        new StartupPipeline("test")
+                .addStep("root", () -> {})
+                .addStep("left", step, "root")
+                .addStep("right", step, "root")
+                .run();
+    }
+
+    @Test
+    public void testFailureSkipsDependents() {
+        IllegalStateException failure = new IllegalStateException("boom");
+        AtomicBoolean ranDependent = new AtomicBoolean(false);
+        StartupPipeline pipeline = new StartupPipeline("test")
+                .addStep("a", () -> { throw failure; })
+                .addStep("b", () -> ranDependent.set(true), "a");
+
+        Exception thrown = assertThrows(Exception.class, pipeline::run);
+        assertSame(failure, thrown);
+        assertFalse(ranDependent.get());
+    }
+
+    @Test
+    public void testUnknownDependencyIsRejected() {
+        StartupPipeline pipeline = new StartupPipeline("test");
+        assertThrows(IllegalArgumentException.class, () -> pipeline.addStep("a", () -> {}, "missing"));
+    }
+
+    @Test
+    public void testStepsAreRecordedInReport() throws Exception {
+        StartupReport report = new StartupReport();
+        new StartupPipeline("test", report)
+                .addStep("a", () -> {})
+                .addStep("b", () -> Thread.sleep(5), "a")
+                .run();
+        List<StartupReport.Phase> phases = report.getPhases();
+        assertEquals(2, phases.size());
+        assertEquals("a", phases.get(0).getName());
+        assertEquals("b", phases.get(1).getName());
+        assertTrue(phases.get(1).getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(phases.get(1).getStartNanos() >= phases.get(0).getStartNanos() + phases.get(0).getDurationNanos());
+    }
+}
@@ -106,6 +106,11 @@ public class Main {
             builder.withZooKeeperStartupTimeoutMS(Integer.parseInt(zookeeperStartupTimeout));
         }
 
+        String readinessTimeout = System.getenv("MAC_STARTUP_READINESS_TIMEOUT_MS");
+        if (readinessTimeout != null && !readinessTimeout.isEmpty()) {
+            builder.withStartupReadinessTimeoutMS(Integer.parseInt(readinessTimeout));
+        }
+
         return builder
                 .withStaticZooKeeperPort(zookeeperPort)
                 .build();
@@ -1,5 +1,6 @@
 rootProject.name = "mini-accumulo-cluster"
 
+include("benchmarks")
 include("library")
 include("mac-app")
 include("test-client")
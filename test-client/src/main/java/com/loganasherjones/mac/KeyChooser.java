@@ -0,0 +1,99 @@
+package com.loganasherjones.mac;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks row numbers in {@code [0, recordCount)} following a
+ * {@link WorkloadConfig.Distribution}.
+ */
+public abstract class KeyChooser {
+    protected final long recordCount;
+
+    protected KeyChooser(long recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    public abstract long next(Random random);
+
+    public static KeyChooser create(WorkloadConfig.Distribution distribution, long recordCount) {
+        switch (distribution) {
+            case UNIFORM:
+                return new Uniform(recordCount);
+            case SEQUENTIAL:
+                return new Sequential(recordCount);
+            case ZIPFIAN:
+                return new Zipfian(recordCount);
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+    }
+
+    private static class Uniform extends KeyChooser {
+        Uniform(long recordCount) {
+            super(recordCount);
+        }
+
+        @Override
+        public long next(Random random) {
+            return (long) (random.nextDouble() * recordCount);
+        }
+    }
+
+    private static class Sequential extends KeyChooser {
+        private final AtomicLong next = new AtomicLong();
+
+        Sequential(long recordCount) {
+            super(recordCount);
+        }
+
+        @Override
+        public long next(Random random) {
+            return Math.floorMod(next.getAndIncrement(), recordCount);
+        }
+    }
+
+    /**
+     * The zipfian generator from Gray et al, "Quickly Generating
+     * Billion-Record Synthetic Databases", as used by YCSB. Popular rows are
+     * hashed across the key space so they do not all land in one tablet.
+     */
+    private static class Zipfian extends KeyChooser {
+        private static final double THETA = 0.99;
+
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(long recordCount) {
+            super(recordCount);
+            double zeta2 = zeta(2);
+            this.zetan = zeta(recordCount);
+            this.alpha = 1.0 / (1.0 - THETA);
+            this.eta = (1 - Math.pow(2.0 / recordCount, 1 - THETA)) / (1 - zeta2 / zetan);
+        }
+
+        private static double zeta(long n) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, THETA);
+            }
+            return sum;
+        }
+
+        @Override
+        public long next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            long rank;
+            if (uz < 1.0) {
+                rank = 0;
+            } else if (uz < 1.0 + Math.pow(0.5, THETA)) {
+                rank = 1;
+            } else {
+                rank = (long) (recordCount * Math.pow(eta * u - eta + 1, alpha));
+            }
+            return Math.floorMod(rank * 0x9E3779B97F4A7C15L, recordCount);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Durability;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for a {@link WorkloadDriver} run. Build one with
+ * {@link WorkloadConfigBuilder}, or from properties like a YCSB workload
+ * file with {@link #fromProperties(Properties)}.
+ */
+public class WorkloadConfig {
+
+    /**
+     * How rows are picked for reads, scans and updates.
+     */
+    public enum Distribution {
+        /** Every row is equally likely. */
+        UNIFORM,
+        /** Rows are visited in order, wrapping around at the end. */
+        SEQUENTIAL,
+        /** A few rows are very popular, scattered across the table. */
+        ZIPFIAN
+    }
+
+    private final String table;
+    private final long recordCount;
+    private final long operationCount;
+    private final int threads;
+    private final int valueSize;
+    private final int columnsPerRow;
+    private final Distribution distribution;
+    private final double readProportion;
+    private final double updateProportion;
+    private final double scanProportion;
+    private final double batchReadProportion;
+    private final int scanLength;
+    private final int batchReadSize;
+    private final BatchWriterConfig batchWriterConfig;
+
+    private WorkloadConfig(
+            String table,
+            long recordCount,
+            long operationCount,
+            int threads,
+            int valueSize,
+            int columnsPerRow,
+            Distribution distribution,
+            double readProportion,
+            double updateProportion,
+            double scanProportion,
+            double batchReadProportion,
+            int scanLength,
+            int batchReadSize,
+            BatchWriterConfig batchWriterConfig
+    ) {
+        this.table = table;
+        this.recordCount = recordCount;
+        this.operationCount = operationCount;
+        this.threads = threads;
+        this.valueSize = valueSize;
+        this.columnsPerRow = columnsPerRow;
+        this.distribution = distribution;
+        this.readProportion = readProportion;
+        this.updateProportion = updateProportion;
+        this.scanProportion = scanProportion;
+        this.batchReadProportion = batchReadProportion;
+        this.scanLength = scanLength;
+        this.batchReadSize = batchReadSize;
+        this.batchWriterConfig = batchWriterConfig;
+    }
+
+    /**
+     * Read a workload from properties. Every key is optional:
+     * <pre>
+     * table=workload
+     * recordcount=100000
+     * operationcount=100000
+     * threads=4
+     * valuesize=100
+     * columnsperrow=1
+     * distribution=uniform|sequential|zipfian
+     * readproportion=0.5
+     * updateproportion=0.5
+     * scanproportion=0
+     * batchreadproportion=0
+     * scanlength=100
+     * batchreadsize=10
+     * batchwriter.maxmemory=52428800
+     * batchwriter.maxlatency.ms=120000
+     * batchwriter.threads=3
+     * batchwriter.durability=default|none|log|flush|sync
+     * </pre>
+     *
+     * @param props - the workload properties.
+     * @return the workload.
+     */
+    public static WorkloadConfig fromProperties(Properties props) {
+        WorkloadConfigBuilder builder = new WorkloadConfigBuilder();
+        if (props.containsKey("table")) {
+            builder.withTable(props.getProperty("table"));
+        }
+        if (props.containsKey("recordcount")) {
+            builder.withRecordCount(Long.parseLong(props.getProperty("recordcount")));
+        }
+        if (props.containsKey("operationcount")) {
+            builder.withOperationCount(Long.parseLong(props.getProperty("operationcount")));
+        }
+        if (props.containsKey("threads")) {
+            builder.withThreads(Integer.parseInt(props.getProperty("threads")));
+        }
+        if (props.containsKey("valuesize")) {
+            builder.withValueSize(Integer.parseInt(props.getProperty("valuesize")));
+        }
+        if (props.containsKey("columnsperrow")) {
+            builder.withColumnsPerRow(Integer.parseInt(props.getProperty("columnsperrow")));
+        }
+        if (props.containsKey("distribution")) {
+            builder.withDistribution(Distribution.valueOf(props.getProperty("distribution").toUpperCase()));
+        }
+        builder.withProportions(
+                Double.parseDouble(props.getProperty("readproportion", "0.5")),
+                Double.parseDouble(props.getProperty("updateproportion", "0.5")),
+                Double.parseDouble(props.getProperty("scanproportion", "0")),
+                Double.parseDouble(props.getProperty("batchreadproportion", "0"))
+        );
+        if (props.containsKey("scanlength")) {
+            builder.withScanLength(Integer.parseInt(props.getProperty("scanlength")));
+        }
+        if (props.containsKey("batchreadsize")) {
+            builder.withBatchReadSize(Integer.parseInt(props.getProperty("batchreadsize")));
+        }
+
+        BatchWriterConfig bwConfig = new BatchWriterConfig();
+        if (props.containsKey("batchwriter.maxmemory")) {
+            bwConfig.setMaxMemory(Long.parseLong(props.getProperty("batchwriter.maxmemory")));
+        }
+        if (props.containsKey("batchwriter.maxlatency.ms")) {
+            bwConfig.setMaxLatency(Long.parseLong(props.getProperty("batchwriter.maxlatency.ms")), TimeUnit.MILLISECONDS);
+        }
+        if (props.containsKey("batchwriter.threads")) {
+            bwConfig.setMaxWriteThreads(Integer.parseInt(props.getProperty("batchwriter.threads")));
+        }
+        if (props.containsKey("batchwriter.durability")) {
+            bwConfig.setDurability(Durability.valueOf(props.getProperty("batchwriter.durability").toUpperCase()));
+        }
+        builder.withBatchWriterConfig(bwConfig);
+        return builder.build();
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public long getOperationCount() {
+        return operationCount;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getValueSize() {
+        return valueSize;
+    }
+
+    public int getColumnsPerRow() {
+        return columnsPerRow;
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    public double getReadProportion() {
+        return readProportion;
+    }
+
+    public double getUpdateProportion() {
+        return updateProportion;
+    }
+
+    public double getScanProportion() {
+        return scanProportion;
+    }
+
+    public double getBatchReadProportion() {
+        return batchReadProportion;
+    }
+
+    public int getScanLength() {
+        return scanLength;
+    }
+
+    public int getBatchReadSize() {
+        return batchReadSize;
+    }
+
+    public BatchWriterConfig getBatchWriterConfig() {
+        return batchWriterConfig;
+    }
+
+    public static class WorkloadConfigBuilder {
+        private String table = "workload";
+        private long recordCount = 100_000;
+        private long operationCount = 100_000;
+        private int threads = 4;
+        private int valueSize = 100;
+        private int columnsPerRow = 1;
+        private Distribution distribution = Distribution.UNIFORM;
+        private double readProportion = 0.5;
+        private double updateProportion = 0.5;
+        private double scanProportion = 0;
+        private double batchReadProportion = 0;
+        private int scanLength = 100;
+        private int batchReadSize = 10;
+        private BatchWriterConfig batchWriterConfig = new BatchWriterConfig();
+
+        public WorkloadConfigBuilder withTable(String table) {
+            this.table = table;
+            return this;
+        }
+
+        /**
+         * @param recordCount - number of rows written by
+         *                    {@link WorkloadDriver#load()} and the size of
+         *                    the key space for every other operation.
+         * @return this
+         */
+        public WorkloadConfigBuilder withRecordCount(long recordCount) {
+            this.recordCount = recordCount;
+            return this;
+        }
+
+        /**
+         * @param operationCount - total number of operations performed by
+         *                       {@link WorkloadDriver#run()}, across every thread.
+         * @return this
+         */
+        public WorkloadConfigBuilder withOperationCount(long operationCount) {
+            this.operationCount = operationCount;
+            return this;
+        }
+
+        public WorkloadConfigBuilder withThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param valueSize - size in bytes of each value written.
+         * @return this
+         */
+        public WorkloadConfigBuilder withValueSize(int valueSize) {
+            this.valueSize = valueSize;
+            return this;
+        }
+
+        /**
+         * @param columnsPerRow - number of columns in each mutation.
+         * @return this
+         */
+        public WorkloadConfigBuilder withColumnsPerRow(int columnsPerRow) {
+            this.columnsPerRow = columnsPerRow;
+            return this;
+        }
+
+        public WorkloadConfigBuilder withDistribution(Distribution distribution) {
+            this.distribution = distribution;
+            return this;
+        }
+
+        /**
+         * Set the mix of operations performed by {@link WorkloadDriver#run()}.
+         * The proportions are relative to each other and do not need to add
+         * up to one.
+         *
+         * @param read - single row reads with a {@code Scanner}.
+         * @param update - single row writes with the shared {@code BatchWriter}.
+         * @param scan - range scans of {@code scanLength} rows.
+         * @param batchRead - {@code BatchScanner} fetches of {@code batchReadSize} random rows.
+         * @return this
+         */
+        public WorkloadConfigBuilder withProportions(double read, double update, double scan, double batchRead) {
+            this.readProportion = read;
+            this.updateProportion = update;
+            this.scanProportion = scan;
+            this.batchReadProportion = batchRead;
+            return this;
+        }
+
+        public WorkloadConfigBuilder withScanLength(int scanLength) {
+            this.scanLength = scanLength;
+            return this;
+        }
+
+        public WorkloadConfigBuilder withBatchReadSize(int batchReadSize) {
+            this.batchReadSize = batchReadSize;
+            return this;
+        }
+
+        public WorkloadConfigBuilder withBatchWriterConfig(BatchWriterConfig batchWriterConfig) {
+            this.batchWriterConfig = batchWriterConfig;
+            return this;
+        }
+
+        public WorkloadConfig build() {
+            if (recordCount <= 0) {
+                throw new IllegalArgumentException("recordCount must be greater than 0");
+            }
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads must be greater than 0");
+            }
+            if (columnsPerRow <= 0) {
+                throw new IllegalArgumentException("columnsPerRow must be greater than 0");
+            }
+            if (readProportion < 0 || updateProportion < 0 || scanProportion < 0 || batchReadProportion < 0) {
+                throw new IllegalArgumentException("Proportions must not be negative");
+            }
+            if (readProportion + updateProportion + scanProportion + batchReadProportion <= 0) {
+                throw new IllegalArgumentException("At least one proportion must be greater than 0");
+            }
+            return new WorkloadConfig(
+                    table,
+                    recordCount,
+                    operationCount,
+                    threads,
+                    valueSize,
+                    columnsPerRow,
+                    distribution,
+                    readProportion,
+                    updateProportion,
+                    scanProportion,
+                    batchReadProportion,
+                    scanLength,
+                    batchReadSize,
+                    batchWriterConfig
+            );
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives a configurable ingest and scan workload against a table, in the
+ * spirit of YCSB.
+ * <p>
+ * {@link #load()} writes {@code recordCount} rows with every thread sharing
+ * one {@link BatchWriter}. {@link #run()} then performs
+ * {@code operationCount} operations, picking each one according to the
+ * configured proportions. Both return the latency histogram and
+ * throughput of every operation.
+ * </p>
+ * <p>
+ * Writes only time {@link BatchWriter#addMutation(Mutation)}, which copies
+ * the mutation into the writer's buffer and only blocks when the buffer is
+ * full, so their latencies are enqueue latencies. The time to flush the
+ * buffer to the tablet servers and close the writer is reported as
+ * {@link Operation#FLUSH}. Once mutations are rejected the writer is
+ * replaced, so later writes are not all counted as failed.
+ * </p>
+ *
+ * <pre>{@code
+ * WorkloadConfig config = new WorkloadConfig.WorkloadConfigBuilder()
+ *         .withProportions(0.95, 0.05, 0, 0)
+ *         .withDistribution(WorkloadConfig.Distribution.ZIPFIAN)
+ *         .build();
+ * WorkloadDriver driver = new WorkloadDriver(mac.getRootClient(), config);
+ * System.out.println(driver.load());
+ * System.out.println(driver.run());
+ * }</pre>
+ */
+public class WorkloadDriver {
+    private static final Logger log = LoggerFactory.getLogger(WorkloadDriver.class);
+
+    public enum Operation {
+        /** A row written by {@link #load()}, timed until it is buffered. */
+        INSERT,
+        /** A single row read with a {@code Scanner}. */
+        READ,
+        /** A row overwritten with the shared {@code BatchWriter}, timed until it is buffered. */
+        UPDATE,
+        /** A range scan of {@code scanLength} rows. */
+        SCAN,
+        /** A {@code BatchScanner} fetch of {@code batchReadSize} random rows. */
+        BATCH_READ,
+        /** The final flush and close of the shared {@code BatchWriter}. */
+        FLUSH
+    }
+
+    private final AccumuloClient client;
+    private final WorkloadConfig config;
+    private final KeyChooser keys;
+
+    public WorkloadDriver(AccumuloClient client, WorkloadConfig config) {
+        this.client = client;
+        this.config = config;
+        this.keys = KeyChooser.create(config.getDistribution(), config.getRecordCount());
+    }
+
+    /**
+     * Create the table if needed and write every row.
+     *
+     * @return latencies of the inserts.
+     * @throws Exception if the table cannot be created.
+     */
+    public WorkloadReport load() throws Exception {
+        long recordCount = config.getRecordCount();
+        int threads = config.getThreads();
+        return execute("load", (thread, writer, recorder) -> {
+            Random random = ThreadLocalRandom.current();
+            long first = recordCount * thread / threads;
+            long last = recordCount * (thread + 1) / threads;
+            for (long row = first; row < last; row++) {
+                Mutation mutation = mutation(row, random);
+                long start = System.nanoTime();
+                try {
+                    writer.addMutation(mutation);
+                    recorder.success(Operation.INSERT, start);
+                } catch (MutationsRejectedException e) {
+                    log.debug("{} failed", Operation.INSERT, e);
+                    recorder.failure(Operation.INSERT);
+                }
+            }
+        });
+    }
+
+    /**
+     * Perform the configured mix of operations.
+     *
+     * @return latencies of every operation performed.
+     * @throws Exception if the table cannot be created.
+     */
+    public WorkloadReport run() throws Exception {
+        long operationCount = config.getOperationCount();
+        int threads = config.getThreads();
+        double read = config.getReadProportion();
+        double update = read + config.getUpdateProportion();
+        double scan = update + config.getScanProportion();
+        double total = scan + config.getBatchReadProportion();
+        return execute("run", (thread, writer, recorder) -> {
+            Random random = ThreadLocalRandom.current();
+            long operations = operationCount * (thread + 1) / threads - operationCount * thread / threads;
+            for (long i = 0; i < operations; i++) {
+                double choice = random.nextDouble() * total;
+                Operation operation;
+                if (choice < read) {
+                    operation = Operation.READ;
+                } else if (choice < update) {
+                    operation = Operation.UPDATE;
+                } else if (choice < scan) {
+                    operation = Operation.SCAN;
+                } else {
+                    operation = Operation.BATCH_READ;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    perform(operation, writer, random);
+                    recorder.success(operation, start);
+                } catch (Exception e) {
+                    log.debug("{} failed", operation, e);
+                    recorder.failure(operation);
+                }
+            }
+        });
+    }
+
+    private void perform(Operation operation, SharedWriter writer, Random random) throws Exception {
+        switch (operation) {
+            case READ:
+                try (Scanner scanner = client.createScanner(config.getTable())) {
+                    scanner.setRange(Range.exact(row(keys.next(random))));
+                    consume(scanner, Long.MAX_VALUE);
+                }
+                break;
+            case UPDATE:
+                writer.addMutation(mutation(keys.next(random), random));
+                break;
+            case SCAN:
+                try (Scanner scanner = client.createScanner(config.getTable())) {
+                    int entries = config.getScanLength() * config.getColumnsPerRow();
+                    scanner.setRange(new Range(row(keys.next(random)), null));
+                    scanner.setBatchSize(entries);
+                    consume(scanner, entries);
+                }
+                break;
+            case BATCH_READ:
+                try (BatchScanner scanner = client.createBatchScanner(config.getTable())) {
+                    List<Range> ranges = new ArrayList<>();
+                    for (int i = 0; i < config.getBatchReadSize(); i++) {
+                        ranges.add(Range.exact(row(keys.next(random))));
+                    }
+                    scanner.setRanges(ranges);
+                    consume(scanner, Long.MAX_VALUE);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported operation " + operation);
+        }
+    }
+
+    private static void consume(Iterable<Map.Entry<Key, Value>> scanner, long limit) {
+        long count = 0;
+        for (Map.Entry<Key, Value> ignored : scanner) {
+            if (++count >= limit) {
+                break;
+            }
+        }
+    }
+
+    private Mutation mutation(long row, Random random) {
+        Mutation mutation = new Mutation(row(row));
+        for (int column = 0; column < config.getColumnsPerRow(); column++) {
+            byte[] value = new byte[config.getValueSize()];
+            random.nextBytes(value);
+            mutation.put("field", Integer.toString(column), new Value(value));
+        }
+        return mutation;
+    }
+
+    private static String row(long row) {
+        return String.format("row%012d", row);
+    }
+
+    private WorkloadReport execute(String phase, Task task) throws Exception {
+        if (!client.tableOperations().exists(config.getTable())) {
+            client.tableOperations().create(config.getTable());
+        }
+
+        int threads = config.getThreads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Recorder> recorders = new ArrayList<>();
+        Recorder flushes = new Recorder();
+        recorders.add(flushes);
+        long start = System.nanoTime();
+        SharedWriter writer = new SharedWriter();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                futures.add(executor.submit(() -> {
+                    task.run(thread, writer, recorder);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            long flushStart = System.nanoTime();
+            try {
+                writer.close();
+                flushes.success(Operation.FLUSH, flushStart);
+            } catch (MutationsRejectedException e) {
+                log.warn("Mutations were rejected when flushing the {} phase", phase, e);
+                flushes.failure(Operation.FLUSH);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        Map<Operation, Long> failures = new EnumMap<>(Operation.class);
+        for (Recorder recorder : recorders) {
+            for (Map.Entry<Operation, LatencyHistogram> entry : recorder.latencies.entrySet()) {
+                latencies.computeIfAbsent(entry.getKey(), k -> new LatencyHistogram()).merge(entry.getValue());
+            }
+            for (Map.Entry<Operation, Long> entry : recorder.failures.entrySet()) {
+                failures.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+        }
+        return new WorkloadReport(phase, elapsed, latencies, failures);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run(int thread, SharedWriter writer, Recorder recorder) throws Exception;
+    }
+
+    /**
+     * The {@link BatchWriter} every thread writes to. A writer that rejected
+     * mutations rejects everything after, so it is replaced with a new one.
+     */
+    private class SharedWriter {
+        private BatchWriter writer;
+
+        SharedWriter() throws TableNotFoundException {
+            this.writer = create();
+        }
+
+        private BatchWriter create() throws TableNotFoundException {
+            return client.createBatchWriter(config.getTable(), config.getBatchWriterConfig());
+        }
+
+        void addMutation(Mutation mutation) throws MutationsRejectedException, TableNotFoundException {
+            BatchWriter current = current();
+            try {
+                current.addMutation(mutation);
+            } catch (MutationsRejectedException e) {
+                replace(current);
+                throw e;
+            } catch (IllegalStateException e) {
+                // Another thread replaced and closed the writer in between.
+                BatchWriter replacement = current();
+                if (replacement == current) {
+                    throw e;
+                }
+                replacement.addMutation(mutation);
+            }
+        }
+
+        private synchronized BatchWriter current() throws TableNotFoundException {
+            if (writer == null) {
+                writer = create();
+            }
+            return writer;
+        }
+
+        private synchronized void replace(BatchWriter failed) {
+            if (writer != failed) {
+                return;
+            }
+            writer = null;
+            try {
+                failed.close();
+            } catch (MutationsRejectedException e) {
+                log.debug("Closed a writer that rejected mutations", e);
+            }
+        }
+
+        synchronized void close() throws MutationsRejectedException {
+            if (writer != null) {
+                BatchWriter closing = writer;
+                writer = null;
+                closing.close();
+            }
+        }
+    }
+
+    private static class Recorder {
+        private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Long> failures = new EnumMap<>(Operation.class);
+
+        void success(Operation operation, long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            latencies.computeIfAbsent(operation, k -> new LatencyHistogram()).record(elapsed);
+        }
+
+        void failure(Operation operation) {
+            failures.merge(operation, 1L, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.loganasherjones.mac;
+
+import org.apache.accumulo.core.client.Accumulo;
+import org.apache.accumulo.core.client.AccumuloClient;
+
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.Properties;
+
+/**
+ * Runs a {@link WorkloadDriver} against a running cluster, by default the
+ * docker image on {@code 127.0.0.1:21811}.
+ * <p>
+ * Takes an optional workload properties file (see
+ * {@link WorkloadConfig#fromProperties(Properties)}), which may also set
+ * {@code instance.name}, {@code instance.zookeepers}, {@code auth.principal}
+ * and {@code auth.password}. System properties override the file.
+ * </p>
+ */
+public class WorkloadMain {
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties();
+        if (args.length > 0) {
+            try (Reader reader = new FileReader(args[0])) {
+                props.load(reader);
+            }
+        }
+        props.putAll(System.getProperties());
+
+        WorkloadConfig config = WorkloadConfig.fromProperties(props);
+        try (AccumuloClient client = Accumulo.newClient()
+                .to(props.getProperty("instance.name", "default"),
+                        props.getProperty("instance.zookeepers", "127.0.0.1:21811"))
+                .as(props.getProperty("auth.principal", "root"),
+                        props.getProperty("auth.password", "notsecure"))
+                .build()) {
+            WorkloadDriver driver = new WorkloadDriver(client, config);
+            if (!Boolean.parseBoolean(props.getProperty("skipload", "false"))) {
+                System.out.println(driver.load());
+            }
+            System.out.println(driver.run());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.loganasherjones.mac;
+
+import java.util.Map;
+
+/**
+ * Latency and throughput of each operation of a {@link WorkloadDriver} run.
+ */
+public class WorkloadReport {
+    private final String phase;
+    private final long elapsedNanos;
+    private final Map<WorkloadDriver.Operation, LatencyHistogram> latencies;
+    private final Map<WorkloadDriver.Operation, Long> failures;
+
+    WorkloadReport(
+            String phase,
+            long elapsedNanos,
+            Map<WorkloadDriver.Operation, LatencyHistogram> latencies,
+            Map<WorkloadDriver.Operation, Long> failures
+    ) {
+        this.phase = phase;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+        this.failures = failures;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @param operation - the operation.
+     * @return the latencies of successful operations, or null if the
+     * operation was never performed.
+     */
+    public LatencyHistogram getLatencies(WorkloadDriver.Operation operation) {
+        return latencies.get(operation);
+    }
+
+    public long getFailures(WorkloadDriver.Operation operation) {
+        return failures.getOrDefault(operation, 0L);
+    }
+
+    /**
+     * @param operation - the operation.
+     * @return successful operations per second over the whole run.
+     */
+    public double getThroughput(WorkloadDriver.Operation operation) {
+        LatencyHistogram histogram = latencies.get(operation);
+        if (histogram == null || elapsedNanos == 0) {
+            return 0;
+        }
+        return histogram.getCount() / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("[%s] %.1fs%n", phase, elapsedNanos / 1e9));
+        result.append(String.format("%-11s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "failed", "ops/sec", "mean(us)", "p50(us)", "p95(us)", "p99(us)", "max(us)"));
+        for (WorkloadDriver.Operation operation : WorkloadDriver.Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            if (histogram == null) {
+                continue;
+            }
+            result.append(String.format("%-11s %10d %8d %10.1f %10.1f %10d %10d %10d %10d%n",
+                    operation,
+                    histogram.getCount(),
+                    getFailures(operation),
+                    getThroughput(operation),
+                    histogram.getMeanNanos() / 1000,
+                    histogram.getPercentileNanos(50) / 1000,
+                    histogram.getPercentileNanos(95) / 1000,
+                    histogram.getPercentileNanos(99) / 1000,
+                    histogram.getMaxNanos() / 1000));
+        }
+        return result.toString();
+    }
+}